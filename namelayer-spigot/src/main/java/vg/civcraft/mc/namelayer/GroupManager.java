@@ -1,39 +1,109 @@
 package vg.civcraft.mc.namelayer;
 
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 import java.util.ArrayList;
+import java.sql.SQLException;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 import vg.civcraft.mc.namelayer.database.GroupManagerDao;
+import vg.civcraft.mc.namelayer.database.GroupWarmLoader;
 import vg.civcraft.mc.namelayer.events.GroupCreateEvent;
 import vg.civcraft.mc.namelayer.events.GroupDeleteEvent;
 import vg.civcraft.mc.namelayer.events.GroupMergeEvent;
 import vg.civcraft.mc.namelayer.events.GroupTransferEvent;
+import vg.civcraft.mc.namelayer.group.EffectivePermissions;
 import vg.civcraft.mc.namelayer.group.Group;
+import vg.civcraft.mc.namelayer.group.GroupCache;
+import vg.civcraft.mc.namelayer.group.GroupHandle;
+import vg.civcraft.mc.namelayer.group.MembershipIndex;
+import vg.civcraft.mc.namelayer.group.MergeDelta;
+import vg.civcraft.mc.namelayer.misc.AdminBypass;
+import vg.civcraft.mc.namelayer.misc.Futures;
+import vg.civcraft.mc.namelayer.misc.NegativeCache;
 import vg.civcraft.mc.namelayer.permission.GroupPermission;
 import vg.civcraft.mc.namelayer.permission.PermissionHandler;
 import vg.civcraft.mc.namelayer.permission.PermissionType;
+import vg.civcraft.mc.namelayer.replication.ChangeLogTransport;
+import vg.civcraft.mc.namelayer.replication.GroupDelta;
+import vg.civcraft.mc.namelayer.replication.GroupReplicator;
+import vg.civcraft.mc.namelayer.replication.LoopbackTransport;
 
 public class GroupManager{
 	
 	private static GroupManagerDao groupManagerDao;
-	private PermissionHandler permhandle;
+	private static PermissionHandler permhandle;
 	
-	private static Map<String, Group> groupsByName = new ConcurrentHashMap<>();
-	private static Map<Integer, Group> groupsById = new ConcurrentHashMap<>();
+	private static GroupCache groupCache;
+	private static NegativeCache<String> missingGroupNames;
+	private static NegativeCache<Integer> missingGroupIds;
+	private static MembershipIndex membershipIndex;
+	private static AdminBypass adminBypass;
+	private static GroupReplicator replicator;
+	
+	// one load per group at a time, concurrent callers wait for it
+	private static final Map<String, GroupLoad> loadsByName = new ConcurrentHashMap<>();
+	private static final Map<Integer, GroupLoad> loadsById = new ConcurrentHashMap<>();
+	private static final Object loadLock = new Object();
+	// handles live as long as someone holds on to them
+	private static final Map<String, GroupHandle> handles = new MapMaker().weakValues().makeMap();
 	
 	private static boolean mergingInProgress = false;
 	
 	public GroupManager(){
 		groupManagerDao = NameLayerPlugin.getGroupManagerDao();
 		permhandle = new PermissionHandler();
+		ConfigurationSection config = NameLayerPlugin.getInstance().getConfig().getConfigurationSection("groups.cache");
+		int maxEntries = config != null ? config.getInt("maxentries", 50000) : 50000;
+		long memoryBudget = (config != null ? config.getLong("memorybudget", 256) : 256) * 1024 * 1024;
+		long pinDuration = config != null ? config.getLong("pinduration", 600000) : 600000;
+		long checkInterval = config != null ? config.getLong("checkinterval", 1200) : 1200;
+		groupCache = new GroupCache(maxEntries, memoryBudget, pinDuration, group -> {
+			// same as invalidating, anyone holding on to the group will reload it
+			group.setValid(false);
+			permhandle.deletePerms(group);
+			NameLayerPlugin.getBlackList().removeFromCache(group.getName());
+		});
+		Bukkit.getScheduler().runTaskTimer(NameLayerPlugin.getInstance(), groupCache::evict, checkInterval, checkInterval);
+		long negativeTtl = config != null ? config.getLong("negativettl", 30000) : 30000;
+		missingGroupNames = new NegativeCache<>(negativeTtl);
+		missingGroupIds = new NegativeCache<>(negativeTtl);
+		// without groups there is no dao, so neither memberships to index nor changes to replicate
+		if (groupManagerDao != null) {
+			membershipIndex = new MembershipIndex(groupManagerDao);
+			for (Player p : Bukkit.getOnlinePlayers()) {
+				membershipIndex.load(p.getUniqueId());
+			}
+		}
+		adminBypass = new AdminBypass();
+		adminBypass.refreshAll();
+		long adminRecheckInterval = config != null ? config.getLong("adminrecheckinterval", 200) : 200;
+		Bukkit.getScheduler().runTaskTimer(NameLayerPlugin.getInstance(), adminBypass::refreshAll, adminRecheckInterval, adminRecheckInterval);
+		replicator = new GroupReplicator();
+		String transport = NameLayerPlugin.getInstance().getConfig().getString("groups.replication.transport", "none");
+		if (groupManagerDao == null) {
+			return;
+		}
+		if ("loopback".equalsIgnoreCase(transport)) {
+			replicator.setTransport(new LoopbackTransport());
+		} else if ("database".equalsIgnoreCase(transport)) {
+			ChangeLogTransport changeLog = new ChangeLogTransport(groupManagerDao, NameLayerPlugin.getInstance().getLogger(),
+					NameLayerPlugin.getInstance().getConfig().getLong("groups.replication.retention", 600));
+			replicator.setTransport(changeLog);
+			changeLog.start(NameLayerPlugin.getInstance().getConfig().getLong("groups.replication.pollinterval", 20));
+		}
 	}
 	
 	/**
@@ -70,8 +140,8 @@ public class GroupManager{
 				Bukkit.getScheduler().runTaskAsynchronously(NameLayerPlugin.getInstance(), new Runnable() {
 						@Override
 						public void run() {
-							// So.... when you `new Group` it makes a ton of DB calls and gets ids and members. If the group exists, ID at this point will be > -1...
-							if (group.getGroupId() == -1) {// || getGroup(group.getName()) == null) {
+							// `new Group` no longer touches the database, so ask the cache / db whether the name is taken.
+							if (!hasGroup(group.getName())) {
 								// group doesn't exist, so schedule create.
 								Bukkit.getScheduler().runTask(NameLayerPlugin.getInstance(), new Runnable() {
 										@Override
@@ -139,11 +209,29 @@ public class GroupManager{
 	
 	private int internalCreateGroup(Group group, boolean savetodb, String name, UUID owner, String password) {
 		int id;
+		if (name != null) {
+			missingGroupNames.invalidate(name.toLowerCase());
+		}
 		if (savetodb){
-			id = groupManagerDao.createGroup(name, owner, password);
+			// default perms are given to a newly created group in the same transaction
+			Map<PlayerType, List<PermissionType>> defaultPerms = getDefaultPermissions();
+			id = groupManagerDao.createGroup(name, owner, password, defaultPerms);
 			if (id > -1) {
-				initiateDefaultPerms(id); // give default perms to a newly create group
-				GroupManager.getGroup(id); // force a recache from DB.
+				missingGroupIds.invalidate(id);
+				// the group isn't cached yet, so the owner membership created by the database has to be indexed here
+				membershipIndex.setMember(owner, name, PlayerType.OWNER);
+				membershipIndex.setFounder(name, null, owner);
+				// the transaction wrote exactly this, so the group is cached without reading it back
+				Group created = new Group(name, owner, false, password, id, System.currentTimeMillis());
+				if (owner != null) {
+					created.addMember(owner, PlayerType.OWNER, false);
+				}
+				synchronized (loadLock) {
+					abortLoads(name);
+					groupCache.put(created);
+				}
+				permhandle.preload(Collections.singletonMap(created, new GroupPermission(created, defaultPerms)));
+				replicate(GroupDelta.invalidate(name));
 			}
 		} else {
 			id = group.getGroupId();
@@ -174,12 +262,12 @@ public class GroupManager{
 			NameLayerPlugin.getInstance().getLogger().log(Level.INFO, "Group delete was cancelled for "+ groupName);
 			return false;
 		}
-		// Unlinks subgroups.
-		group.prepareForDeletion();
+		// Unlinks subgroups, the database drops the links along with the group.
+		group.prepareForDeletion(false);
 		deleteGroupPerms(group);
-		groupsByName.remove(group.getName());
-		for (int id : group.getGroupIds()) {
-			groupsById.remove(id);
+		synchronized (loadLock) {
+			abortLoads(group.getName());
+			groupCache.remove(group.getName());
 		}
 		
 		// Call after actual delete to alert listeners that we're done.
@@ -190,7 +278,11 @@ public class GroupManager{
 		group.setValid(false);
 		if (savetodb){
 			groupManagerDao.deleteGroup(groupName);
+			replicate(GroupDelta.ofGroups(GroupDelta.Kind.DELETE, group.getName(), null));
 		}
+		List<UUID> involved = group.getAllMembers();
+		involved.add(group.getOwner());
+		membershipIndex.removeGroup(group.getName(), involved);
 		return true;
 	}
 	
@@ -210,20 +302,13 @@ public class GroupManager{
 			NameLayerPlugin.log(Level.INFO, "Group transfer event was cancelled for group: " + g.getName());
 			return;
 		}
-		if (savetodb){
-			g.addMember(uuid, PlayerType.OWNER);
-			g.setOwner(uuid);
-		} else {
-			g.addMember(uuid, PlayerType.OWNER, false);
-			g.setOwner(uuid, false);
-		}
+		g.transferOwnership(uuid, savetodb);
 	}
 
 	/**
-	 * Merging is initiated asynchronously on the shard the player currently inhabits. Due to the complexity of keeping
-	 * the cache consistent, we're whiffing on this one a bit and _for now_ simply invalidating the cache on servers.
-	 *
-	 * Eventually, we'll need to go line-by-line through the db code and just replicate in cache. That day is not today.
+	 * Applies a merge to the cached groups. The merged group's members, subgroups, permissions and ids move
+	 * to the remaining group in memory, so neither of them has to be reloaded. Members of both groups keep
+	 * their role in the remaining group, just like in the database.
 	 *
 	 * @param group the origin group
 	 * @param toMerge the group to merge in
@@ -233,20 +318,56 @@ public class GroupManager{
 			NameLayerPlugin.getInstance().getLogger().log(Level.INFO, "Group merge failed, caller passed in null", new Exception());
 			return;
 		}
-
-		// Merge brings subgroups with, but unlinks the toMerge group out from under any supergroup it had.
-		// This doesn't update the database but simply updates all _impacted_ groups in cache. The database is
-		// already updated for this.
-		for (Group subMerge : toMerge.getSubgroups()) {
+		doneMergeGroup(computeMerge(group, toMerge));
+	}
+	
+	private MergeDelta computeMerge(Group group, Group toMerge) {
+		return MergeDelta.compute(group, toMerge, getPermissionforGroup(group), getPermissionforGroup(toMerge));
+	}
+	
+	private void doneMergeGroup(MergeDelta delta) {
+		Group group = delta.getInto();
+		Group toMerge = delta.getMerged();
+		if (toMerge.getSuperGroup() != null) {
+			Group.unlink(toMerge.getSuperGroup(), toMerge, false);
+		}
+		for (Group subMerge : delta.getSubgroups()) {
 			Group.link(group, subMerge, false);
 		}
+		// whatever is left would have formed a cycle and is dropped, the database does the same
+		for (Group subMerge : toMerge.getSubgroups()) {
+			Group.unlink(toMerge, subMerge, false);
+		}
+
+		toMerge.setValid(false);
+		deleteGroupPerms(toMerge);
+		// the new ids and members go into one change, so no snapshot has the ids without the members
+		group.change(() -> {
+			synchronized (loadLock) {
+				abortLoads(group.getName());
+				abortLoads(toMerge.getName());
+				groupCache.remove(toMerge.getName());
+				// the ids of the merged group now belong to the remaining one
+				group.setGroupIds(delta.getIds());
+				groupCache.put(group);
+			}
+			missingGroupNames.markMissing(toMerge.getName().toLowerCase());
+			group.addMembers(delta.getNewMembers(), false);
+		});
+		GroupPermission perms = getPermissionforGroup(group);
+		for (Map.Entry<PlayerType, List<PermissionType>> entry : delta.getNewPermissions().entrySet()) {
+			for (PermissionType perm : entry.getValue()) {
+				perms.addPermission(entry.getKey(), perm, false);
+			}
+		}
+		// blacklist entries came along with the ids
+		NameLayerPlugin.getBlackList().removeFromCache(group.getName());
+		NameLayerPlugin.getBlackList().removeFromCache(toMerge.getName());
+		group.invalidateEffectivePermissions(null);
+		membershipIndex.removeGroup(toMerge.getName(), delta.getMergedMembers());
 
 		GroupMergeEvent event = new GroupMergeEvent(group, toMerge, true);
 		Bukkit.getPluginManager().callEvent(event);
-
-		// Then invalidate. Updating the cache was proving unreliable; we'll address it later.
-		GroupManager.invalidateCache(group.getName());
-		GroupManager.invalidateCache(toMerge.getName());
 	}
 
 	public void mergeGroup(Group group, Group to){
@@ -268,38 +389,34 @@ public class GroupManager{
 					group.getName() + " and " + toMerge.getName());
 			return;
 		}
-		group.isValid();
+		MergeDelta delta = computeMerge(group, toMerge);
+		if (!savetodb) {
+			doneMergeGroup(delta);
+			return;
+		}
+		// Both groups are locked until the merge is written. The delta is written as is, so changes made to
+		// either group in the meantime would be lost.
+		boolean groupDisciplined = group.isDisciplined();
+		boolean toMergeDisciplined = toMerge.isDisciplined();
 		group.setDisciplined(true, false);
 		toMerge.setDisciplined(true, false);
-		
-		if (savetodb){
-			// This basically just fires starting events and disciplines groups on target server.
-			// They then wait for merge to complete. Botched merges will lock groups, basically. :shrug:
-
-			NameLayerPlugin.getInstance().getServer().getScheduler().runTaskAsynchronously(
-					NameLayerPlugin.getInstance(), new Runnable(){
-
-				@Override
-				public void run() {
-					groupManagerDao.mergeGroup(group.getName(), toMerge.getName());
-					// At this point, at the DB level all non-overlap members are in target group, name is reset to target,
-					// unique group header record is removed, and faction_id all point to new name.
-
-					// We handle supergroup right here right now; does its own mercury message to update in cache.
-					if (toMerge.getSuperGroup() != null) {
-						Group sup = toMerge.getSuperGroup();
-						Group.unlink(sup, toMerge); 
-						// The above handles the need to unlink any supergroup from merge in DB.
-					}
-
-					// Subgroup update is handled in doneMerge, as its a cache-only update.
-
-					deleteGroupPerms(toMerge); // commit perm updates to DB.
-
-					doneMergeGroup(group, toMerge);
-				}
-			});
-		}
+		CompletableFuture<Boolean> write = Futures.supplyAsync(() -> groupManagerDao.mergeGroup(delta)).exceptionally(e -> {
+			// handled like a failed write below, so both groups are unlocked again
+			NameLayerPlugin.getInstance().getLogger().log(Level.WARNING, "Problem merging " + toMerge.getName()
+					+ " into " + group.getName(), e);
+			return false;
+		});
+		Futures.thenOnMainThread(write, merged -> {
+			if (merged) {
+				doneMergeGroup(delta);
+				replicate(GroupDelta.ofGroups(GroupDelta.Kind.MERGE, group.getName(), toMerge.getName()));
+			} else {
+				NameLayerPlugin.log(Level.WARNING, "Group merge of " + toMerge.getName() + " into " + group.getName()
+						+ " failed to write, nothing was changed");
+				toMerge.setDisciplined(toMergeDisciplined, false);
+			}
+			group.setDisciplined(groupDisciplined, false);
+		});
 	}
 	
 	public static List<Group> getSubGroups(String name) {
@@ -310,14 +427,60 @@ public class GroupManager{
 
 		List<Group> groups = groupManagerDao.getSubGroups(name);
 		for (Group group : groups) {
-			groupsByName.put(group.getName().toLowerCase(), group);
-			for (int j : group.getGroupIds()){
-				groupsById.put(j, group);
-			}
+			cacheGroupTree(group);
 		}
 		return groups;
 	}
 	
+	/**
+	 * Puts a freshly loaded group and every subgroup that was loaded along with it into the cache.
+	 * Subgroups which were already cached are the same objects and are left alone.
+	 * @param group the group to cache
+	 */
+	private static void cacheGroupTree(Group group) {
+		groupCache.put(group);
+		for (Group subgroup : group.getSubgroups()) {
+			if (groupCache.peek(subgroup.getName()) != subgroup) {
+				cacheGroupTree(subgroup);
+			}
+		}
+	}
+	
+	/**
+	 * Publishes the result of a warm load. The new maps replace the caches as a whole, so lookups either
+	 * see the old lazily filled caches or the complete group graph, never a half built one.
+	 * @param loaded the fully assembled groups and permissions
+	 */
+	void publishWarmLoad(GroupWarmLoader.Result loaded) {
+		permhandle.preload(loaded.permissions);
+		groupCache.replaceAll(loaded.groupsByName, loaded.groupsById);
+	}
+	
+	/**
+	 * Gets a group only if it is already cached, never touches the database.
+	 * @param name the name of the group
+	 * @return the cached group or null
+	 */
+	public static Group getCachedGroup(String name) {
+		if (name == null) {
+			return null;
+		}
+		return groupCache.peek(name);
+	}
+	
+	/**
+	 * Gets a lasting handle to a group, which keeps leading to the current group object after the group is
+	 * invalidated or reloaded. The group doesn't have to exist yet.
+	 * @param name the name of the group
+	 * @return the handle, the same one for as long as it is held on to
+	 */
+	public static GroupHandle getHandle(String name) {
+		if (name == null) {
+			return null;
+		}
+		return handles.computeIfAbsent(name.toLowerCase(), GroupHandle::new);
+	}
+	
 	/*
 	 * Making this static so I can use it in other places without needing the GroupManager Object.
 	 * Saves me code so I can always grab a group if it is already loaded while not needing to check db.
@@ -328,51 +491,151 @@ public class GroupManager{
 			return null;
 		}
 		
-		String lower = name.toLowerCase();
-		if (groupsByName.containsKey(lower)) {
-			return groupsByName.get(lower);
-		} else { 
-			Group group = groupManagerDao.getGroup(name);
-			if (group != null) {
-				groupsByName.put(lower, group);
-				for (int j : group.getGroupIds()){
-					groupsById.put(j, group);
-				}
-			} else {
-				NameLayerPlugin.getInstance().getLogger().log(Level.INFO, "getGroup by Name failed, unable to find the group " + name);
-			}
-			return group;
+		Group cached = groupCache.get(name);
+		if (cached != null) {
+			return cached;
+		}
+		return loadGroup(name);
+	}
+	
+	private static Group loadGroup(String name) {
+		if (missingGroupNames.isMissing(name.toLowerCase())) {
+			return null;
 		}
+		return loadOnce(loadsByName, name.toLowerCase(), () -> groupManagerDao.loadGroup(name), () -> {
+			missingGroupNames.markMissing(name.toLowerCase());
+			NameLayerPlugin.getInstance().getLogger().log(Level.INFO, "getGroup by Name failed, unable to find the group " + name);
+		});
 	}
 		
 	public static Group getGroup(int groupId){
-		if (groupsById.containsKey(groupId)) {
-			return groupsById.get(groupId);
-		} else { 
-			Group group = groupManagerDao.getGroup(groupId);
-			if (group != null) {
-				groupsByName.put(group.getName().toLowerCase(), group);
-				for (int j : group.getGroupIds()){
-					groupsById.put(j, group);
+		Group cached = groupCache.get(groupId);
+		if (cached != null) {
+			return cached;
+		}
+		return loadGroup(groupId);
+	}
+	
+	private static Group loadGroup(int groupId) {
+		if (missingGroupIds.isMissing(groupId)) {
+			return null;
+		}
+		return loadOnce(loadsById, groupId, () -> groupManagerDao.loadGroup(groupId), () -> {
+			missingGroupIds.markMissing(groupId);
+			NameLayerPlugin.getInstance().getLogger().log(Level.INFO, "getGroup by ID failed, unable to find the group " + groupId);
+		});
+	}
+	
+	/**
+	 * Loads a group unless someone else is already loading it, in which case we wait for their result.
+	 * If the group is invalidated while it's loading, the result is thrown away and everyone waiting loads again.
+	 * @param loads the loads in flight for the kind of key
+	 * @param key the lower case name or id of the group
+	 * @param loader does the actual loading
+	 * @param onMissing run if the group doesn't exist, but not if it couldn't be read
+	 * @return the loaded group or null if it doesn't exist or couldn't be read
+	 */
+	private static <K> Group loadOnce(Map<K, GroupLoad> loads, K key, GroupLoader loader, Runnable onMissing) {
+		while (true) {
+			GroupLoad load = new GroupLoad();
+			GroupLoad running = loads.putIfAbsent(key, load);
+			if (running != null) {
+				Group group = running.join();
+				if (!running.stale) {
+					return group;
 				}
-			} else {
-				NameLayerPlugin.getInstance().getLogger().log(Level.INFO, "getGroup by ID failed, unable to find the group " + groupId);
+				continue;
+			}
+			Group group = null;
+			boolean failed = true;
+			try {
+				group = loader.load();
+				failed = false;
+			} catch (SQLException e) {
+				NameLayerPlugin.getInstance().getLogger().log(Level.WARNING, "Problem loading group " + key, e);
+			} finally {
+				synchronized (loadLock) {
+					if (!load.stale) {
+						if (group != null) {
+							cacheGroupTree(group);
+						} else if (!failed) {
+							// only a query which succeeded can tell that the group doesn't exist
+							onMissing.run();
+						}
+					}
+					loads.remove(key, load);
+				}
+				load.complete(group);
+			}
+			if (!load.stale) {
+				return group;
 			}
-			return group;
 		}
 	}
 	
+	/**
+	 * Throws away any load in flight which could bring back the old state of a group that is being invalidated.
+	 * Has to be called while holding the loadLock.
+	 * @param name the name of the group
+	 */
+	private static void abortLoads(String name) {
+		GroupLoad load = loadsByName.remove(name.toLowerCase());
+		if (load != null) {
+			load.stale = true;
+		}
+		// we can't tell which group a load by id is for, so all of them have to start over
+		for (GroupLoad byId : loadsById.values()) {
+			byId.stale = true;
+		}
+		loadsById.clear();
+	}
+	
+	/**
+	 * Non blocking version of {@link #getGroup(String)}. Completes right away if the group is cached,
+	 * otherwise it is loaded off the main thread.
+	 * @param name the name of the group
+	 * @return future completed with the group or null if it doesn't exist
+	 */
+	public static CompletableFuture<Group> getGroupAsync(String name) {
+		if (name == null) {
+			return CompletableFuture.completedFuture(getGroup(name));
+		}
+		Group cached = groupCache.get(name);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+		return Futures.supplyAsync(() -> loadGroup(name));
+	}
+	
+	/**
+	 * Non blocking version of {@link #getGroup(int)}.
+	 * @param groupId any id of the group
+	 * @return future completed with the group or null if it doesn't exist
+	 */
+	public static CompletableFuture<Group> getGroupAsync(int groupId) {
+		Group cached = groupCache.get(groupId);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+		return Futures.supplyAsync(() -> loadGroup(groupId));
+	}
+	
+	/**
+	 * Non blocking version of {@link #hasGroup(String)}.
+	 * @param groupName the name of the group
+	 * @return future completed with whether the group exists
+	 */
+	public static CompletableFuture<Boolean> hasGroupAsync(String groupName) {
+		return getGroupAsync(groupName).thenApply(group -> group != null);
+	}
+	
 	public static boolean hasGroup(String groupName) {
 		if (groupName == null) {
 			NameLayerPlugin.getInstance().getLogger().log(Level.INFO, "HasGroup Name failed, name was null ", new Exception());
 			return false;
 		}
 
-		if (!groupsByName.containsKey(groupName.toLowerCase())) {
-			return (getGroup(groupName.toLowerCase()) != null);
-		} else {
-			return true;
-		}
+		return getGroup(groupName) != null;
 	}
 	
 	/**
@@ -386,21 +649,18 @@ public class GroupManager{
 			NameLayerPlugin.getInstance().getLogger().log(Level.INFO, "getSpecialCircumstance failed, caller passed in null", new Exception());
 			return null;
 		}
-		String lower = name.toLowerCase();
-		if (groupsByName.containsKey(lower)) {
-			return groupsByName.get(lower);
-		} else { 
-			Group group = groupManagerDao.getGroup(name);
-			if (group != null) {
-				groupsByName.put(lower, group);
-				for (int j : group.getGroupIds()){
-					groupsById.put(j, group);
-				}
-			} else {
-				group = groupManagerDao.getGroup(NameLayerPlugin.getSpecialAdminGroup());
-			}
-			return group;
+		Group group = getGroup(name);
+		if (group == null) {
+			group = groupManagerDao.getGroup(NameLayerPlugin.getSpecialAdminGroup());
 		}
+		return group;
+	}
+	
+	/**
+	 * @return the cache of group permissions, mostly useful for its statistics
+	 */
+	public PermissionHandler getPermissionHandler() {
+		return permhandle;
 	}
 	
 	/**
@@ -426,15 +686,101 @@ public class GroupManager{
 		return hasAccess(getGroup(groupname), player, perm);
 	}
 	
+	/**
+	 * Checks access by group id, which is what most plugins store. Doesn't allocate if the group is cached.
+	 * @param groupId any id of the group
+	 * @param player the player
+	 * @param perm the permission to check
+	 * @return whether the player has the permission in the group or one of its parents
+	 */
+	public boolean hasAccess(int groupId, UUID player, PermissionType perm) {
+		Group group = getGroup(groupId);
+		if (group == null) {
+			NameLayerPlugin.getInstance().getLogger().log(Level.INFO, "hasAccess failed (access denied), could not find group " + groupId);
+			return false;
+		}
+		return hasAccess(group, player, perm);
+	}
+	
+	/**
+	 * Non blocking version of {@link #hasAccess(String, UUID, PermissionType)}. Loading the group and its
+	 * permissions happens off the main thread.
+	 * @return future completed with whether the player has the permission
+	 */
+	public CompletableFuture<Boolean> hasAccessAsync(String groupname, UUID player, PermissionType perm) {
+		return Futures.supplyAsync(() -> hasAccess(groupname, player, perm));
+	}
+	
 	public boolean hasAccess(Group group, UUID player, PermissionType perm) {
-		Player p = Bukkit.getPlayer(player);
-		if (p != null && (p.isOp() || p.hasPermission("namelayer.admin"))) {
+		if (hasAdminBypass(player)) {
 			return true;
 		}
 		if (group == null || perm == null) {
 			NameLayerPlugin.getInstance().getLogger().log(Level.INFO, "hasAccess failed, caller passed in null", new Exception());
 			return false;
 		}
+		return checkAccess(group, player, perm);
+	}
+	
+	/**
+	 * Checks one permission for many groups at once. The player and their admin bypass are only looked up
+	 * once and supergroups shared by several of the groups are only resolved once.
+	 * @param player the player
+	 * @param groups the groups to check
+	 * @param perm the permission to check
+	 * @return bitset with bit i set if the player has the permission in the i-th group, in iteration order
+	 */
+	public BitSet hasAccessAll(UUID player, Collection<Group> groups, PermissionType perm) {
+		BitSet result = new BitSet(groups.size());
+		if (hasAdminBypass(player)) {
+			result.set(0, groups.size());
+			return result;
+		}
+		if (perm == null) {
+			NameLayerPlugin.getInstance().getLogger().log(Level.INFO, "hasAccessAll failed, caller passed in null", new Exception());
+			return result;
+		}
+		int i = 0;
+		for (Group group : groups) {
+			if (group != null && checkAccess(group, player, perm)) {
+				result.set(i);
+			}
+			i++;
+		}
+		return result;
+	}
+	
+	/**
+	 * Picks the group ids a player has a permission in, see {@link #hasAccessAll(UUID, Collection, PermissionType)}.
+	 * @param player the player
+	 * @param groupIds ids of the groups to check
+	 * @param perm the permission to check
+	 * @return the ids the player has the permission in, in iteration order. Unknown groups are left out
+	 */
+	public List<Integer> filterAccessible(UUID player, Iterable<Integer> groupIds, PermissionType perm) {
+		List<Integer> result = new ArrayList<>();
+		if (perm == null) {
+			NameLayerPlugin.getInstance().getLogger().log(Level.INFO, "filterAccessible failed, caller passed in null", new Exception());
+			return result;
+		}
+		boolean bypass = hasAdminBypass(player);
+		for (Integer id : groupIds) {
+			if (id == null) {
+				continue;
+			}
+			Group group = getGroup(id);
+			if (group != null && (bypass || checkAccess(group, player, perm))) {
+				result.add(id);
+			}
+		}
+		return result;
+	}
+	
+	private boolean hasAdminBypass(UUID player) {
+		return adminBypass.has(player);
+	}
+	
+	private boolean checkAccess(Group group, UUID player, PermissionType perm) {
 		if (!group.isValid()) {
 			group = getGroup(group.getName());
 			if (group == null) {
@@ -442,25 +788,42 @@ public class GroupManager{
 				return false;
 			}
 		}
+		groupCache.recordAccessCheck(group);
 		return hasPlayerInheritsPerms(group, player, perm);
 	}
 
 	/**
-	 * Checks if a player has a permission in a group or one of its parent groups
+	 * Checks if a player has a permission in a group or one of its parent groups. What a player effectively
+	 * has in a group is memoized, so this only walks the supergroups the first time.
 	 * @param group the group, and its parents etc to check
 	 * @param player the player
 	 * @param perm the permission to check
 	 * @return if the player has the specified permission in a group or one of its parents
 	 */
 	private boolean hasPlayerInheritsPerms(Group group, UUID player, PermissionType perm) {
-		while (group != null) {
-			PlayerType type = group.getPlayerType(player);
-			if (type != null && getPermissionforGroup(group).hasPermission(type, perm)) {
-				return true;
-			}
-			group = group.getSuperGroup();
+		return EffectivePermissions.has(getEffectivePermissions(group, player), perm);
+	}
+	
+	/**
+	 * A player's permissions in a group are the ones of their role there plus their permissions in the
+	 * supergroup, which are memoized as well. Groups sharing a supergroup therefore only resolve it once.
+	 */
+	private long[] getEffectivePermissions(Group group, UUID player) {
+		EffectivePermissions memo = group.getEffectivePermissions();
+		long[] effective = memo.get(player);
+		if (effective != null) {
+			return effective;
 		}
-		return false;
+		// supergroup changes invalidate their subgroups too, so this version covers the whole chain
+		int version = memo.getVersion();
+		Group supergroup = group.getSuperGroup();
+		effective = supergroup != null ? getEffectivePermissions(supergroup, player) : new long[0];
+		PlayerType type = group.getPlayerType(player);
+		if (type != null) {
+			effective = getPermissionforGroup(group).addPermissionBits(type, effective);
+		}
+		memo.put(player, effective, version);
+		return effective;
 	}
 			
 	// == PERMISSION HANDLING ============================================================= //
@@ -478,14 +841,20 @@ public class GroupManager{
 			NameLayerPlugin.getInstance().getLogger().log(Level.INFO, "getAllGroupNames failed, caller passed in null", new Exception());
 			return new ArrayList<>();
 		}
-		return groupManagerDao.getGroupNames(uuid);
+		List<String> names = membershipIndex.getGroupNames(uuid);
+		return names != null ? names : groupManagerDao.getGroupNames(uuid);
 	}
 	
-	private void initiateDefaultPerms(Integer groupId){
-		if (groupId == null) {
-			NameLayerPlugin.getInstance().getLogger().log(Level.INFO, "initiateDefaultPerms failed, caller passed in null", new Exception());
-			return;
-		}
+	/**
+	 * Non blocking version of {@link #getAllGroupNames(UUID)}.
+	 * @param uuid the player
+	 * @return future completed with the names of all groups the player is a member of
+	 */
+	public CompletableFuture<List<String>> getGroupNamesAsync(UUID uuid) {
+		return Futures.supplyAsync(() -> getAllGroupNames(uuid));
+	}
+	
+	private Map<PlayerType, List<PermissionType>> getDefaultPermissions(){
 		Map <PlayerType, List <PermissionType>> defaultPermMapping = new HashMap<GroupManager.PlayerType, List<PermissionType>>();
 		for(PermissionType perm : PermissionType.getAllPermissions()) {
 			for(PlayerType type : perm.getDefaultPermLevels()) {
@@ -493,7 +862,7 @@ public class GroupManager{
 				perms.add(perm);
 			}
 		}
-		groupManagerDao.addAllPermissions(groupId, defaultPermMapping);
+		return defaultPermMapping;
 	}
 	
 	public String getDefaultGroup(UUID uuid){
@@ -514,42 +883,128 @@ public class GroupManager{
 			return;
 		}
 
-		Group g = groupsByName.get(group.toLowerCase());
+		missingGroupNames.invalidate(group.toLowerCase());
+		Group g;
+		synchronized (loadLock) {
+			abortLoads(group);
+			g = groupCache.remove(group);
+		}
 		if (g != null) {
 			g.setValid(false);
-			List<Integer>k = g.getGroupIds();
-			groupsByName.remove(group.toLowerCase());
+			permhandle.deletePerms(g);
 			NameLayerPlugin.getBlackList().removeFromCache(g.getName());
-			
-			boolean fail = true;
-			// You have a freaking hashmap, use it.
-			for (int j : k) {
-				if (groupsById.remove(j) != null) {
-					fail = false;
-				}
-			}
-			
-			// FALLBACK is hardloop
-			if (fail) { // can't find ID or cache is wrong.
-				for (Group x: groupsById.values()) {
-					if (x.getName().equals(g.getName())) {
-						groupsById.remove(x.getGroupId());
-					}
-				}
-			}
 		} else {
 			NameLayerPlugin.getInstance().getLogger().log(Level.INFO, "Invalidate cache by name failed, unable to find the group " + group);			
 		}
 	}
 	
+	/**
+	 * Invalidates every cached group and forgets all missing names and ids, for changes which weren't applied
+	 * one by one. Memberships of online players are read again. Has to be called on the main thread.
+	 */
+	public static void invalidateAll() {
+		for (Group group : new ArrayList<>(groupCache.getGroups())) {
+			invalidateCache(group.getName());
+		}
+		missingGroupNames.clear();
+		missingGroupIds.clear();
+		for (Player p : Bukkit.getOnlinePlayers()) {
+			membershipIndex.reload(p.getUniqueId());
+		}
+	}
+	
+	/**
+	 * @return the cache holding all loaded groups, mostly useful for its statistics
+	 */
+	public static GroupCache getGroupCache() {
+		return groupCache;
+	}
+	
+	/**
+	 * @return the index of groups by member, filled for online players. Null if groups are disabled
+	 */
+	public static MembershipIndex getMembershipIndex() {
+		return membershipIndex;
+	}
+	
+	/**
+	 * @return which online players bypass group permission checks
+	 */
+	public static AdminBypass getAdminBypass() {
+		return adminBypass;
+	}
+	
+	/**
+	 * @return keeps the caches of servers sharing the database in sync, set its transport to replicate
+	 */
+	public static GroupReplicator getReplicator() {
+		return replicator;
+	}
+	
+	/**
+	 * Tells the other servers about a change this server wrote to the database.
+	 * @param delta the change
+	 */
+	public static void replicate(GroupDelta delta) {
+		if (replicator != null) {
+			replicator.publish(delta);
+		}
+	}
+	
+	/**
+	 * Updates the member name indexes of all cached groups after a player changed their name. The new name is
+	 * only looked up if any group indexed the player.
+	 * @param uuid the renamed player
+	 */
+	public static void renameMember(UUID uuid) {
+		String name = null;
+		for (Group group : groupCache.getGroups()) {
+			if (group.hasIndexedName(uuid)) {
+				if (name == null) {
+					name = NameAPI.getCurrentName(uuid);
+				}
+				group.renameMember(uuid, name);
+			}
+		}
+	}
+	
+	/**
+	 * Forgets that a group name was missing, for groups another server created.
+	 * @param group the group name
+	 */
+	public static void invalidateMissing(String group) {
+		missingGroupNames.invalidate(group.toLowerCase());
+	}
+	
 	public int countGroups(UUID uuid){
 		if (uuid == null) {
 			NameLayerPlugin.getInstance().getLogger().log(Level.INFO, "countGroups failed, caller passed in null", new Exception());
 			return 0;
 		}
-		return groupManagerDao.countGroups(uuid);
+		int founded = membershipIndex.countFounded(uuid);
+		return founded >= 0 ? founded : groupManagerDao.countGroups(uuid);
 	}
 
+	/**
+	 * Non blocking version of {@link #countGroups(UUID)}.
+	 * @param uuid the player
+	 * @return future completed with the amount of groups the player founded
+	 */
+	public CompletableFuture<Integer> countGroupsAsync(UUID uuid) {
+		return Futures.supplyAsync(() -> countGroups(uuid));
+	}
+	
+	/**
+	 * A group load other callers can wait on. Marked stale if the group was invalidated while loading.
+	 */
+	private static class GroupLoad extends CompletableFuture<Group> {
+		private volatile boolean stale;
+	}
+	
+	private interface GroupLoader {
+		Group load() throws SQLException;
+	}
+	
 	/**
 	 * In ascending order
 	 * Add an enum here if you wish to add more than the four default tiers of
@@ -1,40 +1,69 @@
 package vg.civcraft.mc.namelayer;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
 import vg.civcraft.mc.namelayer.database.AssociationList;
+import vg.civcraft.mc.namelayer.misc.Futures;
+import vg.civcraft.mc.namelayer.misc.NameCache;
+import vg.civcraft.mc.namelayer.misc.NegativeCache;
 
 public class NameAPI {
 	private static GroupManager groupManager;
 	private static AssociationList associations;
 	
-	private static Map<UUID, String> uuidsToName = new HashMap<UUID, String>();
-	private static Map<String, UUID> nameToUUIDS = new HashMap<String, UUID>();
+	// filled from async lookups as well, so it has to be thread safe
+	private static NameCache names = new NameCache(0);
+	// lower case names and uuids the database recently didn't know
+	private static NegativeCache<String> unknownNames = new NegativeCache<>(30000);
+	private static NegativeCache<UUID> unknownUUIDs = new NegativeCache<>(30000);
 	
 	public NameAPI(GroupManager man, AssociationList ass){
 		groupManager = man;
 		associations =  ass;
+		long unknownTtl = NameLayerPlugin.getInstance().getConfig().getLong("persistance.unknownplayerttl", 30000);
+		names = new NameCache(NameLayerPlugin.getInstance().getConfig().getInt("persistance.namecachesize", 100000));
+		unknownNames = new NegativeCache<>(unknownTtl);
+		unknownUUIDs = new NegativeCache<>(unknownTtl);
 		loadAllPlayerInfo();
 	}
 	
 	public void loadAllPlayerInfo(){
-		uuidsToName.clear();
-		nameToUUIDS.clear();
+		names.clear();
 		
 		boolean load = NameLayerPlugin.getInstance().getConfig().getBoolean("persistance.forceloadnamecaching", false);
 		if (!load)
 			return;
 		AssociationList.PlayerMappingInfo pmi = associations.getAllPlayerInfo();
-		nameToUUIDS = pmi.nameMapping;
-		uuidsToName = pmi.uuidMapping;
-		
+		names.putAll(pmi.uuidMapping);
 	}
 	
+	/**
+	 * Forgets the cached name of a player, so it is read from the database on the next lookup. Call this
+	 * whenever a player's name changed, the member name indexes of cached groups are updated as well.
+	 * @param uuid the player
+	 */
 	public static void resetCache(UUID uuid) {
-		String name = getCurrentName(uuid);
-		uuidsToName.remove(uuid);
-		nameToUUIDS.remove(name);
+		names.remove(uuid);
+		if (groupManager != null) {
+			GroupManager.renameMember(uuid);
+		}
+	}
+	
+	/**
+	 * Forgets all cached names and all players which were unknown, for changes which weren't applied one by one.
+	 */
+	public static void resetCache() {
+		names.clear();
+		unknownNames.clear();
+		unknownUUIDs.clear();
 	}
 	/**
 	 * Returns the UUID of the player on the given server.
@@ -42,10 +71,19 @@ public class NameAPI {
 	 * @return Returns the UUID of the player.
 	 */
 	public static UUID getUUID(String playerName) {
-		UUID uuid = nameToUUIDS.get(playerName);
+		UUID uuid = names.getUUID(playerName);
 		if (uuid == null){
-			uuid = associations.getUUID(playerName);
-			nameToUUIDS.put(playerName, uuid);
+			if (playerName == null || unknownNames.isMissing(playerName.toLowerCase())) {
+				return null;
+			}
+			// cached with the name as spelled in the database, not as the caller spelled it
+			Map.Entry<UUID, String> mapping = associations.getMapping(playerName);
+			if (mapping == null) {
+				unknownNames.markMissing(playerName.toLowerCase());
+			} else {
+				uuid = mapping.getKey();
+				names.put(uuid, mapping.getValue());
+			}
 		}
 		return uuid;
 	}
@@ -55,13 +93,152 @@ public class NameAPI {
 	 * @return Returns the PlayerName from the UUID.
 	 */
 	public static String getCurrentName(UUID uuid) {
-		String name = uuidsToName.get(uuid);
+		String name = names.getName(uuid);
 		if (name == null){
+			if (uuid == null || unknownUUIDs.isMissing(uuid)) {
+				return null;
+			}
 			name = associations.getCurrentName(uuid);
-			uuidsToName.put(uuid, name);
+			if (name == null) {
+				unknownUUIDs.markMissing(uuid);
+			} else {
+				names.put(uuid, name);
+			}
 		}
 		return name;
 	}
+	
+	/**
+	 * Gets the current names of many players at once. Players which aren't cached are read from the database
+	 * together, so this costs a few queries at most instead of one per player.
+	 * @param uuids the players
+	 * @return current name by uuid in the order given, players without a name are left out
+	 */
+	public static Map<UUID, String> getCurrentNames(Collection<UUID> uuids) {
+		Map<UUID, String> result = new LinkedHashMap<>();
+		List<UUID> missing = new ArrayList<>();
+		for (UUID uuid : uuids) {
+			String name = names.getName(uuid);
+			if (name != null) {
+				result.put(uuid, name);
+			} else if (uuid != null && !unknownUUIDs.isMissing(uuid)) {
+				missing.add(uuid);
+				result.put(uuid, null);
+			}
+		}
+		if (!missing.isEmpty()) {
+			Map<UUID, String> loaded;
+			try {
+				loaded = associations.getCurrentNames(missing);
+			} catch (SQLException e) {
+				// nothing is remembered as unknown, the next lookup tries again
+				NameLayerPlugin.getInstance().getLogger().log(Level.WARNING, "Problem looking up " + missing.size() + " player names", e);
+				result.keySet().removeAll(missing);
+				return result;
+			}
+			for (UUID uuid : missing) {
+				String name = loaded.get(uuid);
+				if (name == null) {
+					unknownUUIDs.markMissing(uuid);
+					result.remove(uuid);
+				} else {
+					names.put(uuid, name);
+					result.put(uuid, name);
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Gets the UUIDs of many players at once. Players which aren't cached are read from the database
+	 * together, so this costs a few queries at most instead of one per player.
+	 * @param playerNames the names of the players, case insensitive
+	 * @return UUID by name as given, in the order given, names which don't belong to a player are left out
+	 */
+	public static Map<String, UUID> getUUIDs(Collection<String> playerNames) {
+		Map<String, UUID> result = new LinkedHashMap<>();
+		List<String> missing = new ArrayList<>();
+		for (String playerName : playerNames) {
+			UUID uuid = names.getUUID(playerName);
+			if (uuid != null) {
+				result.put(playerName, uuid);
+			} else if (playerName != null && !unknownNames.isMissing(playerName.toLowerCase())) {
+				missing.add(playerName);
+				result.put(playerName, null);
+			}
+		}
+		if (!missing.isEmpty()) {
+			Map<UUID, String> mappings;
+			try {
+				mappings = associations.getMappings(missing);
+			} catch (SQLException e) {
+				// nothing is remembered as unknown, the next lookup tries again
+				NameLayerPlugin.getInstance().getLogger().log(Level.WARNING, "Problem looking up " + missing.size() + " player uuids", e);
+				result.keySet().removeAll(missing);
+				return result;
+			}
+			Map<String, UUID> loaded = new HashMap<>();
+			for (Map.Entry<UUID, String> mapping : mappings.entrySet()) {
+				names.put(mapping.getKey(), mapping.getValue());
+				loaded.put(mapping.getValue().toLowerCase(), mapping.getKey());
+			}
+			for (String playerName : missing) {
+				UUID uuid = loaded.get(playerName.toLowerCase());
+				if (uuid == null) {
+					unknownNames.markMissing(playerName.toLowerCase());
+					result.remove(playerName);
+				} else {
+					result.put(playerName, uuid);
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Non blocking version of {@link #getUUID(String)}. Completes right away if the name is cached.
+	 * @param playerName The playername.
+	 * @return future completed with the UUID of the player or null.
+	 */
+	public static CompletableFuture<UUID> getUUIDAsync(String playerName) {
+		UUID uuid = names.getUUID(playerName);
+		if (uuid != null) {
+			return CompletableFuture.completedFuture(uuid);
+		}
+		return Futures.supplyAsync(() -> getUUID(playerName));
+	}
+	
+	/**
+	 * Non blocking version of {@link #getCurrentName(UUID)}. Completes right away if the uuid is cached.
+	 * @param uuid The uuid of the player.
+	 * @return future completed with the name of the player or null.
+	 */
+	public static CompletableFuture<String> getCurrentNameAsync(UUID uuid) {
+		String name = names.getName(uuid);
+		if (name != null) {
+			return CompletableFuture.completedFuture(name);
+		}
+		return Futures.supplyAsync(() -> getCurrentName(uuid));
+	}
+	
+	/**
+	 * Forgets that a player was unknown, called whenever a player mapping is added or changed.
+	 * @param playerName the name of the player
+	 * @param uuid the uuid of the player
+	 */
+	public static void forgetUnknownPlayer(String playerName, UUID uuid) {
+		if (playerName != null) {
+			unknownNames.invalidate(playerName.toLowerCase());
+		}
+		unknownUUIDs.invalidate(uuid);
+	}
+	/**
+	 * @return the cache of player names, mostly useful for its statistics
+	 */
+	public static NameCache getNameCache() {
+		return names;
+	}
 	/**
 	 * @return Returns an instance of the GroupManager.
 	 */
@@ -15,6 +15,7 @@ import vg.civcraft.mc.civmodcore.dao.ManagedDatasource;
 import vg.civcraft.mc.namelayer.command.CommandHandler;
 import vg.civcraft.mc.namelayer.database.AssociationList;
 import vg.civcraft.mc.namelayer.database.GroupManagerDao;
+import vg.civcraft.mc.namelayer.database.GroupWarmLoader;
 import vg.civcraft.mc.namelayer.group.AutoAcceptHandler;
 import vg.civcraft.mc.namelayer.group.BlackList;
 import vg.civcraft.mc.namelayer.group.DefaultGroupHandler;
@@ -58,6 +59,9 @@ public class NameLayerPlugin extends ACivMod {
 		if (loadGroups){
 			PermissionType.initialize();
 			blackList = new BlackList();
+			if (config.getBoolean("groups.warmload.enable", false)) {
+				warmLoadGroups();
+			}
 			groupManagerDao.loadGroupsInvitations();
 			defaultGroupHandler = new DefaultGroupHandler();
 			autoAcceptHandler = new AutoAcceptHandler(groupManagerDao.loadAllAutoAccept());
@@ -66,9 +70,23 @@ public class NameLayerPlugin extends ACivMod {
 		}
 	}
 	
+	/**
+	 * Loads every group and its permissions up front instead of lazily on first access.
+	 * If this fails groups are simply loaded lazily as usual.
+	 */
+	private void warmLoadGroups(){
+		GroupWarmLoader loader = new GroupWarmLoader(getLogger(), db,
+				config.getInt("groups.warmload.fetchsize", 0), config.getInt("groups.warmload.threads", 4));
+		GroupWarmLoader.Result loaded = loader.load();
+		if (loaded != null) {
+			NameAPI.getGroupManager().publishWarmLoad(loaded);
+		}
+	}
+	
 	public void registerListeners(){
 		registerListener(new AssociationListener());
 		registerListener(new PlayerListener());
+		registerListener(GroupManager.getAdminBypass());
 	}
 	
 	@Override
@@ -87,6 +105,12 @@ public class NameLayerPlugin extends ACivMod {
 
 	@Override
 	public void onDisable() {
+		if (GroupManager.getReplicator() != null) {
+			GroupManager.getReplicator().close();
+		}
+		if (groupManagerDao != null) {
+			groupManagerDao.close();
+		}
 		MojangNames.reset(this);
 		super.onDisable();
 	}
@@ -158,7 +182,11 @@ public class NameLayerPlugin extends ACivMod {
 		associations.registerMigrations();
 		
 		if (loadGroups) {
-			groupManagerDao = new GroupManagerDao(getLogger(), db);
+			groupManagerDao = new GroupManagerDao(getLogger(), db,
+					config.getLong("groups.writebehind.maxdelay", 50), config.getInt("groups.writebehind.batchsize", 500));
+			groupManagerDao.setTimestampPrecision(config.getLong("groups.activity.precision", 60000));
+			long flushInterval = config.getLong("groups.activity.flushinterval", 1200);
+			Bukkit.getScheduler().runTaskTimerAsynchronously(this, groupManagerDao::flushTimestamps, flushInterval, flushInterval);
 			groupManagerDao.registerMigrations();
 			NameLayerPlugin.log(Level.INFO, "Removing any cycles...");
 			groupManagerDao.removeCycles();
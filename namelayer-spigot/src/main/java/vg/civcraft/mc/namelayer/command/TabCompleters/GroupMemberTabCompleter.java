@@ -15,12 +15,8 @@ public class GroupMemberTabCompleter {
 		Group g = GroupManager.getGroup(groupName);
 		if (g != null) {
 			if (NameAPI.getGroupManager().hasAccess(groupName, sender.getUniqueId(), PermissionType.getPermission("MEMBERS"))) {
-				ArrayList<String> result = new ArrayList<>();
 				List<UUID> uuids = g.getMembersByName(playerName);
-				for (UUID uuid : uuids) {
-					result.add(NameAPI.getCurrentName(uuid));
-				}
-				return result;
+				return new ArrayList<>(NameAPI.getCurrentNames(uuids).values());
 			}
 		}
 		return null;
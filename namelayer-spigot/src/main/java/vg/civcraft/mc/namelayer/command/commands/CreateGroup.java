@@ -4,6 +4,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
@@ -15,6 +16,7 @@ import vg.civcraft.mc.namelayer.NameLayerPlugin;
 import vg.civcraft.mc.namelayer.RunnableOnGroup;
 import vg.civcraft.mc.namelayer.command.PlayerCommandMiddle;
 import vg.civcraft.mc.namelayer.group.Group;
+import vg.civcraft.mc.namelayer.misc.Futures;
 
 public class CreateGroup extends PlayerCommandMiddle{
 
@@ -35,12 +37,6 @@ public class CreateGroup extends PlayerCommandMiddle{
 		}
 		Player p = (Player) sender;
 		String name = args[0];
-		int currentGroupCount = gm.countGroups(p.getUniqueId());
-		
-		if (NameLayerPlugin.getInstance().getGroupLimit() < currentGroupCount + 1 && !(p.isOp() || p.hasPermission("namelayer.admin"))){
-			p.sendMessage(ChatColor.RED + "You cannot create any more groups! Please delete an un-needed group before making more.");
-			return true;
-		}
 		
 		//enforce regulations on the name
 		if (name.length() > 32) {
@@ -68,10 +64,6 @@ public class CreateGroup extends PlayerCommandMiddle{
 			return true;
 		}
 		
-		if (GroupManager.getGroup(name) != null){
-			p.sendMessage(ChatColor.RED + "That group is already taken. Try another unique group name.");
-			return true;
-		}
 		String password = "";
 		if (args.length == 2) {
 			password = args[1];
@@ -79,6 +71,29 @@ public class CreateGroup extends PlayerCommandMiddle{
 		else {
 			password = null;
 		}
+		final String groupPassword = password;
+		// both checks may have to ask the database, so run them off the main thread
+		CompletableFuture<Integer> groupCount = gm.countGroupsAsync(p.getUniqueId());
+		CompletableFuture<Boolean> taken = GroupManager.hasGroupAsync(name);
+		Futures.thenOnMainThread(CompletableFuture.allOf(groupCount, taken), done -> {
+			if (!p.isOnline()) {
+				return;
+			}
+			if (taken.join()) {
+				p.sendMessage(ChatColor.RED + "That group is already taken. Try another unique group name.");
+				return;
+			}
+			int currentGroupCount = groupCount.join();
+			if (NameLayerPlugin.getInstance().getGroupLimit() < currentGroupCount + 1 && !(p.isOp() || p.hasPermission("namelayer.admin"))){
+				p.sendMessage(ChatColor.RED + "You cannot create any more groups! Please delete an un-needed group before making more.");
+				return;
+			}
+			createGroup(p, name, groupPassword, currentGroupCount);
+		});
+		return true;
+	}
+	
+	private void createGroup(Player p, String name, String password, int currentGroupCount) {
 		final UUID uuid = NameAPI.getUUID(p.getName());
 		Group g = new Group(name, uuid, false, password, -1, System.currentTimeMillis());
 		gm.createGroupAsync(g, new RunnableOnGroup() {
@@ -102,7 +117,6 @@ public class CreateGroup extends PlayerCommandMiddle{
 			p.sendMessage(ChatColor.YELLOW + "You have reached the group limit with " + NameLayerPlugin.getInstance().getGroupLimit() + " groups! Please delete un-needed groups if you wish to create more.");
 		}
 		p.sendMessage(ChatColor.GREEN + "Group creation request is in process.");
-		return true;
 	}
 
 	public List<String> tabComplete(CommandSender sender, String[] args) {
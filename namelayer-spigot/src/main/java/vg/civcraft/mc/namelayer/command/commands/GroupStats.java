@@ -1,6 +1,7 @@
 package vg.civcraft.mc.namelayer.command.commands;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
@@ -77,10 +78,11 @@ public class GroupStats extends PlayerCommandMiddle {
 		@Override
 		public void run() {
 			String message = ChatColor.GREEN + "This group is: " + g.getName() + ".\n";
+			Map<UUID, String> currentNames = NameAPI.getCurrentNames(g.getAllMembers());
 			for (PlayerType type: PlayerType.values()){
 				String names = "";
 				for (UUID uu: g.getAllMembers(type))
-					names += NameAPI.getCurrentName(uu) + ", ";
+					names += currentNames.get(uu) + ", ";
 				if (!names.equals("")){
 					names = names.substring(0, names.length()-2);
 					names += ".";
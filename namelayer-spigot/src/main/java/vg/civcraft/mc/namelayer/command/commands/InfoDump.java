@@ -1,6 +1,7 @@
 package vg.civcraft.mc.namelayer.command.commands;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
@@ -9,6 +10,7 @@ import vg.civcraft.mc.namelayer.GroupManager.PlayerType;
 import vg.civcraft.mc.namelayer.NameAPI;
 import vg.civcraft.mc.namelayer.command.PlayerCommandMiddle;
 import vg.civcraft.mc.namelayer.group.Group;
+import vg.civcraft.mc.namelayer.misc.Futures;
 import vg.civcraft.mc.namelayer.permission.GroupPermission;
 import vg.civcraft.mc.namelayer.permission.PermissionType;
 
@@ -35,17 +37,9 @@ public class InfoDump extends PlayerCommandMiddle
 		Player player = (Player)sender;
 		UUID playerUUID = NameAPI.getUUID(player.getName());
 		
-		List<String> groupNames = gm.getAllGroupNames(player.getUniqueId());
-		
-		if(args.length == 0)
-		{
-			player.sendMessage(ChatColor.GREEN + "[NLID]: " + groupNames.size());
-			return true;
-		}
-		else
+		int page = 0;
+		if(args.length != 0)
 		{
-			
-			int page = 0;
 			try
 			{
 				page = Integer.parseInt(args[0]);
@@ -55,7 +49,23 @@ public class InfoDump extends PlayerCommandMiddle
 				player.sendMessage(ChatColor.RED + "Please enter a valid number");
 				return true;
 			}
-
+		}
+		final int requestedPage = page;
+		final boolean countOnly = args.length == 0;
+		
+		Futures.thenOnMainThread(gm.getGroupNamesAsync(player.getUniqueId()),
+				groupNames -> dumpInfo(player, playerUUID, groupNames, countOnly, requestedPage));
+		return true;
+	}
+	
+	private void dumpInfo(Player player, UUID playerUUID, List<String> groupNames, boolean countOnly, int page)
+	{
+		if(countOnly)
+		{
+			player.sendMessage(ChatColor.GREEN + "[NLID]: " + groupNames.size());
+		}
+		else
+		{
 			Group group;
 			try
 			{
@@ -64,7 +74,7 @@ public class InfoDump extends PlayerCommandMiddle
 			catch(Exception e)
 			{
 				player.sendMessage(ChatColor.RED + "No such Group");
-				return true;
+				return;
 			}
 			GroupPermission permissions = gm.getPermissionforGroup(group);
 			StringBuilder outputBuilder = new StringBuilder();
@@ -76,12 +86,14 @@ public class InfoDump extends PlayerCommandMiddle
 			outputBuilder.append(permissions.listPermsforPlayerType(group.getPlayerType(playerUUID)));
 			
 
+			// all names in one go instead of a query per uncached member
+			Map<UUID, String> names = NameAPI.getCurrentNames(group.getAllMembers());
 			outputBuilder.append(" : [OWNERS]");
 			if(gm.hasAccess(group, playerUUID, PermissionType.getPermission("OWNER")))
 			{
 				for(UUID ownerUUID : group.getAllMembers(PlayerType.OWNER))
 				{
-					outputBuilder.append(" " + NameAPI.getCurrentName(ownerUUID));
+					outputBuilder.append(" " + names.get(ownerUUID));
 				}
 			}
 			else
@@ -95,7 +107,7 @@ public class InfoDump extends PlayerCommandMiddle
 			{
 				for(UUID adminUUID : group.getAllMembers(PlayerType.ADMINS))
 				{
-					outputBuilder.append(" " + NameAPI.getCurrentName(adminUUID));
+					outputBuilder.append(" " + names.get(adminUUID));
 				}
 			}
 			else
@@ -109,7 +121,7 @@ public class InfoDump extends PlayerCommandMiddle
 			{
 				for(UUID modUUID : group.getAllMembers(PlayerType.MODS))
 				{
-					outputBuilder.append(" " + NameAPI.getCurrentName(modUUID));
+					outputBuilder.append(" " + names.get(modUUID));
 				}
 			}
 			else
@@ -123,7 +135,7 @@ public class InfoDump extends PlayerCommandMiddle
 			{
 				for(UUID memberUUID : group.getAllMembers(PlayerType.MEMBERS))
 				{
-					outputBuilder.append(" " + NameAPI.getCurrentName(memberUUID));
+					outputBuilder.append(" " + names.get(memberUUID));
 				}
 			}
 			else
@@ -141,7 +153,6 @@ public class InfoDump extends PlayerCommandMiddle
 			}
 
 			player.sendMessage(ChatColor.GREEN + outputBuilder.toString());
-			return true;
 		}
 	}
 
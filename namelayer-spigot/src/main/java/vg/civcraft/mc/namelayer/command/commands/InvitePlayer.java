@@ -125,12 +125,7 @@ public class InvitePlayer extends PlayerCommandMiddle{
 			// invitee is online
 			if (shouldAutoAccept) {
 				// player auto accepts invite
-				if (saveToDB) {
-					group.addMember(invitedPlayer, pType);
-				}
-				else {
-					group.addMember(invitedPlayer, pType, false);
-				}
+				group.addMember(invitedPlayer, pType, saveToDB);
 				invitee.sendMessage(
 						ChatColor.GREEN + " You have auto-accepted invite to the group: " + group.getName());
 			} else {
@@ -154,12 +149,7 @@ public class InvitePlayer extends PlayerCommandMiddle{
 		} else {
 			// invitee is offline or on a different shard
 			if (shouldAutoAccept) {
-				if (saveToDB) {
-					group.addMember(invitedPlayer, pType);
-				}
-				else {
-					group.addMember(invitedPlayer, pType, false);
-				}
+				group.addMember(invitedPlayer, pType, saveToDB);
 			} else {
 				// Player did not auto accept
 				group.addInvite(invitedPlayer, pType, saveToDB);
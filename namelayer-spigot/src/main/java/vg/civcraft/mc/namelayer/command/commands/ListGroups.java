@@ -2,6 +2,7 @@ package vg.civcraft.mc.namelayer.command.commands;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
@@ -9,6 +10,7 @@ import vg.civcraft.mc.namelayer.GroupManager;
 import vg.civcraft.mc.namelayer.NameAPI;
 import vg.civcraft.mc.namelayer.command.PlayerCommandMiddle;
 import vg.civcraft.mc.namelayer.group.Group;
+import vg.civcraft.mc.namelayer.misc.Futures;
 
 public class ListGroups extends PlayerCommandMiddle {
 
@@ -22,29 +24,43 @@ public class ListGroups extends PlayerCommandMiddle {
 
 	@Override
 	public boolean execute(CommandSender sender, String[] args) {
-		Player p = null;
-		UUID uuid = null;
 		boolean autopages = false;
+		CompletableFuture<UUID> lookup;
 		
 		if ((sender.isOp() || sender.hasPermission("namelayer.admin"))) {
-			if (args.length == 0) {
-				uuid = NameAPI.getUUID(sender.getName());
-			} else if (args.length == 1) {
-				uuid = NameAPI.getUUID(args[0]);
-			}
-				
-			if (uuid == null) {
-            	sender.sendMessage(ChatColor.RED + "UUID is NULL, OP Usage is /nllg <playername>");
-            	return true;
-            }
-            autopages = true;
-        } else {
-			p = (Player) sender;
-			uuid = NameAPI.getUUID(p.getName());
+			lookup = NameAPI.getUUIDAsync(args.length == 0 ? sender.getName() : args[0]);
+			autopages = true;
+		} else {
+			lookup = CompletableFuture.completedFuture(((Player) sender).getUniqueId());
 		}
 		
-		List<String> groups = gm.getAllGroupNames(uuid);
+		int target = 1;
+		if (args.length == 1) {
+			try {
+				target = Integer.parseInt(args[0]);
+			} catch (NumberFormatException e) {
+				if (!autopages) {
+					sender.sendMessage(ChatColor.RED + args[0] + " is not a number");
+					return false;
+				}
+			}
+		}
+		final int requestedPage = target;
+		final boolean allPages = autopages;
 		
+		// player and group names may have to come from the database, so don't block the tick on them
+		Futures.thenOnMainThread(lookup, uuid -> {
+			if (uuid == null) {
+				sender.sendMessage(ChatColor.RED + "UUID is NULL, OP Usage is /nllg <playername>");
+				return;
+			}
+			Futures.thenOnMainThread(gm.getGroupNamesAsync(uuid),
+					groups -> sendGroupList(sender, uuid, groups, requestedPage, allPages));
+		});
+		return true;
+	}
+	
+	private void sendGroupList(CommandSender sender, UUID uuid, List<String> groups, int target, boolean autopages) {
 		int pages = (groups.size() / 10);
 		if (groups.size() % 10 > 0) {
 			pages++;
@@ -54,16 +70,6 @@ public class ListGroups extends PlayerCommandMiddle {
 		}
 		int actualPages = pages;
 		
-		int target = 1;
-		if (args.length == 1) {
-			try {
-				target = Integer.parseInt(args[0]);
-			} catch (NumberFormatException e) {
-				sender.sendMessage(ChatColor.RED + args[0] + " is not a number");
-				return false;
-			}
-		}
-		
 		if (target >= pages) {
 			target = pages;
 		}
@@ -89,8 +95,8 @@ public class ListGroups extends PlayerCommandMiddle {
 			}
 		}
 		sender.sendMessage(sb.toString());
-		return true;
 	}
+	
 	public List<String> tabComplete(CommandSender sender, String[] args) {
 		return null;
 	}
@@ -1,7 +1,7 @@
 package vg.civcraft.mc.namelayer.command.commands;
 
-import com.google.common.collect.Lists;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
@@ -58,16 +58,7 @@ public class ListMembers extends PlayerCommandMiddle {
 		if (args.length == 3) {
 			String nameMin = args[1], nameMax = args[2];
 			
-			List<UUID> members = group.getAllMembers();
-			uuids = Lists.newArrayList();
-			
-			for (UUID member : members) {
-				String name = NameAPI.getCurrentName(member);
-				if (name.compareToIgnoreCase(nameMin) >=0 
-						&& name.compareToIgnoreCase(nameMax) <= 0) {
-					uuids.add(member);
-				}
-			}
+			uuids = group.getMembersInNameRange(nameMin, nameMax);
 		} else if (args.length == 2) {
 			String playerRank = args[1];
 			PlayerType filterType = PlayerType.getPlayerType(playerRank);
@@ -83,11 +74,13 @@ public class ListMembers extends PlayerCommandMiddle {
 			uuids = group.getAllMembers();
 		}
 		
+		// all names in one go instead of a query per uncached member
+		Map<UUID, String> names = NameAPI.getCurrentNames(uuids);
 		StringBuilder sb = new StringBuilder();
 		sb.append(ChatColor.GREEN);
 		sb.append("Members are as follows:\n");
 		for (UUID uu: uuids){
-			sb.append(NameAPI.getCurrentName(uu));
+			sb.append(names.get(uu));
 			sb.append(" (");
 			sb.append(group.getPlayerType(uu));
 			sb.append(")\n");
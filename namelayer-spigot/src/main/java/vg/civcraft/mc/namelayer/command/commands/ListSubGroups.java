@@ -11,6 +11,7 @@ import vg.civcraft.mc.namelayer.GroupManager;
 import vg.civcraft.mc.namelayer.NameAPI;
 import vg.civcraft.mc.namelayer.command.PlayerCommandMiddle;
 import vg.civcraft.mc.namelayer.group.Group;
+import vg.civcraft.mc.namelayer.misc.Futures;
 import vg.civcraft.mc.namelayer.permission.PermissionType;
 
 public class ListSubGroups extends PlayerCommandMiddle {
@@ -54,22 +55,24 @@ public class ListSubGroups extends PlayerCommandMiddle {
 			
 			sb.append(String.format(format, "", group.getName(), group.getPlayerType(uuid)));
 			buildList(sb, uuid, group.getSubgroups(), "   ");
+			sender.sendMessage(sb.toString());
 		} else {
-			List<String> groups = gm.getAllGroupNames(uuid);
-			Set<String> supergroups = Sets.newHashSet(groups);
-			
-			for (String groupname : groups) {
-				Group group = GroupManager.getGroup(groupname);
-				removeSubs(group.getSubgroups(), supergroups);
-			}
-			
-			for (String supergroup : supergroups) {
-				Group group = GroupManager.getGroup(supergroup);
-				sb.append(String.format(format, "", group.getName(), group.getPlayerType(uuid)));
-				buildList(sb, uuid, group.getSubgroups(), "   ");
-			}
+			Futures.thenOnMainThread(gm.getGroupNamesAsync(uuid), groups -> {
+				Set<String> supergroups = Sets.newHashSet(groups);
+				
+				for (String groupname : groups) {
+					Group group = GroupManager.getGroup(groupname);
+					removeSubs(group.getSubgroups(), supergroups);
+				}
+				
+				for (String supergroup : supergroups) {
+					Group group = GroupManager.getGroup(supergroup);
+					sb.append(String.format(format, "", group.getName(), group.getPlayerType(uuid)));
+					buildList(sb, uuid, group.getSubgroups(), "   ");
+				}
+				sender.sendMessage(sb.toString());
+			});
 		}
-		sender.sendMessage(sb.toString());
 		return true;
 	}
 
@@ -61,13 +61,13 @@ public class MergeGroups extends PlayerCommandMiddle {
 			return true;
 		}
 		try {
+			// written off the main thread, both groups stay disciplined until it's done
 			gm.mergeGroup(g, toMerge);
-			p.sendMessage(ChatColor.GREEN + "Group merging is completed.");
+			p.sendMessage(ChatColor.GREEN + "Group is under going merge.");
 		} catch (Exception e) {
 			NameLayerPlugin.getInstance().getLogger().log(Level.SEVERE, "Group merging failed", e);
 			p.sendMessage(ChatColor.GREEN + "Group merging may have failed.");
 		}
-		p.sendMessage(ChatColor.GREEN + "Group is under going merge.");
 		return true;
 	}
 
@@ -1,5 +1,6 @@
 package vg.civcraft.mc.namelayer.command.commands;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import org.bukkit.Bukkit;
@@ -141,8 +142,7 @@ public class PromotePlayer extends PlayerCommandMiddle{
 			if(event.isCancelled()){
 				return false;
 			}
-			group.removeMember(promotee);
-			group.addMember(promotee, promoteeType);
+			group.changeRoles(Collections.singletonMap(promotee, promoteeType));
 			p.sendMessage(ChatColor.GREEN + NameAPI.getCurrentName(promotee) + " has been added as (PlayerType) " +
 					promoteeType.toString() + " in (Group) " + group.getName());
 			oProm.sendMessage(ChatColor.GREEN + "You have been promoted to (PlayerType) " +
@@ -150,8 +150,7 @@ public class PromotePlayer extends PlayerCommandMiddle{
 		}
 		else{
 			//player is offline change their perms
-			group.removeMember(promotee);
-			group.addMember(promotee, promoteeType);
+			group.changeRoles(Collections.singletonMap(promotee, promoteeType));
 			p.sendMessage(ChatColor.GREEN + NameAPI.getCurrentName(promotee) + " has been added as (PlayerType) " +
 					promoteeType.toString() + " in (Group) " + group.getName());
 		}
@@ -4,12 +4,20 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import vg.civcraft.mc.civmodcore.dao.ManagedDatasource;
+import vg.civcraft.mc.namelayer.GroupManager;
+import vg.civcraft.mc.namelayer.NameAPI;
+import vg.civcraft.mc.namelayer.replication.GroupDelta;
 
 public class AssociationList {
 	private ManagedDatasource db;
@@ -18,8 +26,13 @@ public class AssociationList {
 	private static final String addPlayer = "call addplayertotable(?, ?)"; // order player name, uuid
 	private static final String getUUIDfromPlayer = "select uuid from Name_player where player=?"; 
 	private static final String getPlayerfromUUID = "select player from Name_player where uuid=?";
+	private static final String getMappingfromPlayer = "select uuid, player from Name_player where player=?";
 	private static final String changePlayerName = "update Name_player set player=? where uuid=?";
 	private static final String getAllPlayerInfo = "select * from Name_player";
+	// %s is expanded to one placeholder per uuid or name
+	private static final String getPlayersfromUUIDs = "select uuid, player from Name_player where uuid in (%s)";
+	private static final String getPlayersfromNames = "select uuid, player from Name_player where player in (%s)";
+	private static final int lookupChunkSize = 500;
 	
 	public AssociationList(Logger logger, ManagedDatasource db){
 		this.db = db;
@@ -108,6 +121,26 @@ public class AssociationList {
 		return null;
 	}
 
+	/**
+	 * Like {@link #getUUID(String)}, but also gives the name the way it is spelled in the database, since
+	 * names are matched case insensitively.
+	 * @param playername the player's name
+	 * @return the UUID and the stored name of the player, or null
+	 */
+	public Map.Entry<UUID, String> getMapping(String playername) {
+		try (Connection connection = db.getConnection();
+				PreparedStatement getMapping = connection.prepareStatement(AssociationList.getMappingfromPlayer);) {
+			getMapping.setString(1, playername);
+			try (ResultSet set = getMapping.executeQuery();) {
+				if (!set.next()) return null;
+				return new AbstractMap.SimpleImmutableEntry<>(UUID.fromString(set.getString("uuid")), set.getString("player"));
+			}
+		} catch (SQLException e) {
+			logger.log(Level.WARNING, "Failed to get player mapping for playername " + playername, e);
+		}
+		return null;
+	}
+
 	/**
 	 *  returns null if no playername was found
 	 * @param uuid get the current server's name for this UUId
@@ -130,12 +163,67 @@ public class AssociationList {
 		return null;
 	}
 
+	/**
+	 * Looks up the current names of many players with one query per {@value #lookupChunkSize} players.
+	 * @param uuids the players
+	 * @return current name by uuid, players which weren't found are left out
+	 * @throws SQLException if any of the queries failed, so players aren't mistaken for unknown ones
+	 */
+	public Map<UUID, String> getCurrentNames(Collection<UUID> uuids) throws SQLException {
+		List<String> keys = new ArrayList<>();
+		for (UUID uuid : uuids) {
+			if (uuid != null) {
+				keys.add(uuid.toString());
+			}
+		}
+		return getMappings(getPlayersfromUUIDs, keys);
+	}
+
+	/**
+	 * Looks up many players by name with one query per {@value #lookupChunkSize} names. Names are matched case
+	 * insensitively, the result holds them the way they are spelled in the database.
+	 * @param playernames the names of the players
+	 * @return stored name by uuid, names which weren't found are left out
+	 * @throws SQLException if any of the queries failed, so players aren't mistaken for unknown ones
+	 */
+	public Map<UUID, String> getMappings(Collection<String> playernames) throws SQLException {
+		List<String> keys = new ArrayList<>();
+		for (String playername : playernames) {
+			if (playername != null) {
+				keys.add(playername);
+			}
+		}
+		return getMappings(getPlayersfromNames, keys);
+	}
+
+	private Map<UUID, String> getMappings(String query, List<String> keys) throws SQLException {
+		Map<UUID, String> mappings = new HashMap<>();
+		for (int start = 0; start < keys.size(); start += lookupChunkSize) {
+			List<String> chunk = keys.subList(start, Math.min(keys.size(), start + lookupChunkSize));
+			try (Connection connection = db.getConnection();
+					PreparedStatement getPlayers = connection.prepareStatement(
+							String.format(query, String.join(",", Collections.nCopies(chunk.size(), "?"))))) {
+				for (int i = 0; i < chunk.size(); i++) {
+					getPlayers.setString(i + 1, chunk.get(i));
+				}
+				try (ResultSet set = getPlayers.executeQuery()) {
+					while (set.next()) {
+						mappings.put(UUID.fromString(set.getString("uuid")), set.getString("player"));
+					}
+				}
+			}
+		}
+		return mappings;
+	}
+
 	public void addPlayer(String playername, UUID uuid){
 		try (Connection connection = db.getConnection();
 				PreparedStatement addPlayer = connection.prepareStatement(AssociationList.addPlayer);) {
 			addPlayer.setString(1, playername);
 			addPlayer.setString(2, uuid.toString());
 			addPlayer.execute();
+			NameAPI.forgetUnknownPlayer(playername, uuid);
+			GroupManager.replicate(GroupDelta.nameChange(uuid, playername));
 		} catch (SQLException e) {
 			logger.log(Level.WARNING, "Failed to add new player mapping {0} <==> {1}, due to {2}", 
 					new Object[] {playername, uuid, e.getMessage()});
@@ -149,6 +237,8 @@ public class AssociationList {
 			changePlayerName.setString(1, newName);
 			changePlayerName.setString(2, uuid.toString());
 			changePlayerName.execute();
+			NameAPI.forgetUnknownPlayer(newName, uuid);
+			GroupManager.replicate(GroupDelta.nameChange(uuid, newName));
 		} catch (SQLException e) {
 			logger.log(Level.WARNING, "Failed to change player name mapping {0} <==> {1}, due to {2}", 
 					new Object[] {newName, uuid, e.getMessage()});
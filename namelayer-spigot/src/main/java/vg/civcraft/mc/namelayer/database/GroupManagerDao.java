@@ -8,6 +8,9 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -15,8 +18,11 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.bukkit.Bukkit;
@@ -25,8 +31,10 @@ import vg.civcraft.mc.namelayer.GroupManager;
 import vg.civcraft.mc.namelayer.GroupManager.PlayerType;
 import vg.civcraft.mc.namelayer.NameLayerPlugin;
 import vg.civcraft.mc.namelayer.group.Group;
+import vg.civcraft.mc.namelayer.group.MergeDelta;
 import vg.civcraft.mc.namelayer.listeners.PlayerListener;
 import vg.civcraft.mc.namelayer.permission.PermissionType;
+import vg.civcraft.mc.namelayer.replication.GroupDelta;
 /**
  * First guinea pig of conversion to ManagedDatasource.
  *
@@ -34,29 +42,52 @@ import vg.civcraft.mc.namelayer.permission.PermissionType;
 public class GroupManagerDao {
 	private Logger logger;
 	private ManagedDatasource db;
+	private final WriteBehindQueue writes;
+	// latest activity per group name which still has to be written
+	private final Map<String, Long> dirtyTimestamps = new ConcurrentHashMap<>();
+	private long timestampPrecision;
 	protected NameLayerPlugin plugin = NameLayerPlugin.getInstance();
 	
 	private static final String removeCycles = "delete a from subgroup a join faction_id a2 ON a.group_id = a2.group_id "
 				+ "JOIN subgroup b JOIN faction_id b2 on b.sub_group_id = b2.group_id where a2.group_name = b2.group_name;";
 	private static final String createGroup = "call createGroup(?,?,?,?)";
-	private static final String getGroup = "select f.group_name, f.founder, f.password, f.discipline_flags, fi.group_id, f.last_timestamp " +
-				"from faction f "
-				+ "inner join faction_id fi on fi.group_name = f.group_name "
-				+ "where f.group_name = ?";
 	private static final String getGroupIDs = "SELECT f.group_id, count(DISTINCT fm.member_name) AS sz FROM faction_id f "
 				+ "INNER JOIN faction_member fm ON f.group_id = fm.group_id WHERE f.group_name = ? GROUP BY f.group_id ORDER BY sz DESC";
-	private static final String getGroupById = "select f.group_name, f.founder, f.password, f.discipline_flags, fi.group_id, f.last_timestamp " +
-				"from faction f "
-				+ "inner join faction_id fi on fi.group_id = ? "
-				+ "where f.group_name = fi.group_name";
+	private static final String getGroupNameById = "select group_name from faction_id where group_id = ?";
+		// Loads headers + all ids (H), all members with roles (M) and subgroup edges (S) for a set of group names
+		// in a single round trip. Each %s is expanded to the same list of placeholders.
+	private static final String hydrateGroups = "select 'H', f.group_name, fi.group_id, f.founder, f.password, f.discipline_flags, f.last_timestamp "
+				+ "from faction f inner join faction_id fi on fi.group_name = f.group_name where f.group_name in (%s) "
+				+ "union all "
+				+ "select 'M', fi.group_name, fm.group_id, fm.member_name, fm.role, null, null "
+				+ "from faction_member fm inner join faction_id fi on fi.group_id = fm.group_id where fi.group_name in (%s) "
+				+ "union all "
+				+ "select distinct 'S', super.group_name, null, sub.group_name, null, null, null "
+				+ "from subgroup s inner join faction_id super on super.group_id = s.group_id "
+				+ "inner join faction_id sub on sub.group_id = s.sub_group_id where super.group_name in (%s)";
+	private static final int hydrateChunkSize = 200;
 	private static final String getAllGroupsNames = "select f.group_name from faction_id f "
 				+ "inner join faction_member fm on f.group_id = fm.group_id "
 				+ "where fm.member_name = ?";
+	private static final String getMemberships = "select f.group_name, fm.role from faction_id f "
+				+ "inner join faction_member fm on f.group_id = fm.group_id "
+				+ "where fm.member_name = ?";
+	private static final String getFoundedGroupNames = "select distinct group_name from faction where founder = ?";
 	private static final String deleteGroup = "call deletegroupfromtable(?, ?)";
 
 	private static final String addMember = "insert into faction_member(" +
 				"group_id, member_name, role) select group_id, ?, ? from "
-				+ "faction_id where group_name = ?";
+				+ "faction_id where group_name = ? on duplicate key update role = values(role)";
+	// %s is one "select ? as member_name, ? as role" row per member, joined by union all
+	private static final String addMembers = "insert into faction_member(group_id, member_name, role) "
+				+ "select fi.group_id, m.member_name, m.role from faction_id fi inner join (%s) m "
+				+ "where fi.group_name = ? on duplicate key update role = values(role)";
+	private static final String removeMembers = "delete fm.* from faction_member fm "
+				+ "inner join faction_id fi on fi.group_id = fm.group_id "
+				+ "where fi.group_name = ? and fm.member_name in (%s)";
+	private static final int memberChunkSize = 500;
+	// key of held back writes which touch players not known up front
+	private static final String anyPlayerKey = "player:*";
 	private static final String getMembers = "select fm.member_name from faction_member fm "
 				+ "inner join faction_id id on id.group_name = ? "
 				+ "where fm.group_id = id.group_id and fm.role = ?";
@@ -81,6 +112,14 @@ public class GroupManagerDao {
 				+ "WHERE group_id IN (SELECT group_id FROM faction_id WHERE group_name = ?) "
 				+ "AND sub_group_id IN (SELECT group_id FROM faction_id WHERE group_name = ?)";
 		
+		// Unlinks all instances (name/id pairs) of the subgroup from whatever supergroup they have.
+	private static final String removeSuperGroups = "DELETE FROM subgroup "
+				+ "WHERE sub_group_id IN (SELECT group_id FROM faction_id WHERE group_name = ?)";
+		
+		// Unlinks all subgroups from all instances (name/id pairs) of the supergroup.
+	private static final String removeSubGroups = "DELETE FROM subgroup "
+				+ "WHERE group_id IN (SELECT group_id FROM faction_id WHERE group_name = ?)";
+		
 		// This lists all unique subgroups (names) for all instances (name/id pairs) of the supergroup.
 	private static final String getSubGroups = "SELECT DISTINCT sub.group_name FROM faction_id sub "
 				+ "INNER JOIN faction_id super "
@@ -102,7 +141,8 @@ public class GroupManagerDao {
 		// returns count of unique names of groups owned by founder
 	private static final String countGroupsFromUUID = "select count(DISTINCT group_name) as count from faction where founder = ?";
 		
-	private static final String mergeGroup = "call mergeintogroup(?,?)";
+	private static final String deleteFaction = "delete from faction where group_name = ?";
+	private static final String renameGroupIds = "update faction_id set group_name = ? where group_name = ?";
 		
 	private static final String updatePassword = "update faction set `password` = ? "
 				+ "where group_name = ?";
@@ -150,6 +190,8 @@ public class GroupManagerDao {
 		// updates "most recent" of all groups with a given name.
 	private static final String updateLastTimestamp = "UPDATE faction SET faction.last_timestamp = NOW() "
 								+ "WHERE group_name = ?;";
+	private static final String setLastTimestamp = "UPDATE faction SET faction.last_timestamp = ? "
+								+ "WHERE group_name = ?;";
 		
 		// Breaking the pattern. Here we directly access a role based on _group ID_ rather then group_name. TODO: evaluate safety.
 	private static final String getPlayerType = "SELECT role FROM faction_member "
@@ -174,11 +216,97 @@ public class GroupManagerDao {
 	private static final String getBlackListMembers = "select b.member_name from blacklist b inner join faction_id fi on fi.group_name=? where b.group_id=fi.group_id;";
 		
 	private static final String getAllGroupIds = "select group_id from faction_id";
+	
+	private static final String addChange = "insert into group_change_log(group_id, kind, payload) "
+				+ "select (select min(group_id) from faction_id where group_name = ?), ?, ?";
+	private static final String getChanges = "select id, payload from group_change_log where id > ? order by id limit ?";
+	private static final String getLastChangeId = "select coalesce(max(id), 0) from group_change_log";
+	private static final String pruneChanges = "delete from group_change_log where created < now() - interval ? second";
 
 
 	public GroupManagerDao(Logger logger, ManagedDatasource db){
+		this(logger, db, 0, 1);
+	}
+	
+	/**
+	 * @param writeDelay how long in ms small writes may be held back to batch them, 0 writes right away
+	 * @param writeBatchSize how many held back writes are flushed without waiting
+	 */
+	public GroupManagerDao(Logger logger, ManagedDatasource db, long writeDelay, int writeBatchSize){
+		this(logger, db, new WriteBehindQueue(logger, db, writeDelay, writeBatchSize));
+	}
+	
+	GroupManagerDao(Logger logger, ManagedDatasource db, WriteBehindQueue writes){
 		this.logger = logger;
 		this.db = db;
+		this.writes = writes;
+	}
+	
+	/**
+	 * @return the queue member, invite, blacklist and timestamp writes go through
+	 */
+	public WriteBehindQueue getWriteQueue() {
+		return writes;
+	}
+	
+	/**
+	 * Runs a write off the main thread. Writes which are held back already are, so they just get queued.
+	 */
+	private void writeAsync(Runnable write) {
+		if (writes.isBatching()) {
+			write.run();
+		} else {
+			plugin.getServer().getScheduler().runTaskAsynchronously(plugin, write);
+		}
+	}
+	
+	/**
+	 * Key for held back writes touching a group.
+	 */
+	private static String groupKey(String group) {
+		return "group:" + (group == null ? null : group.toLowerCase());
+	}
+	
+	/**
+	 * Key for held back writes touching a player's memberships.
+	 */
+	private static String playerKey(UUID player) {
+		return "player:" + player;
+	}
+	
+	private static List<String> groupKeys(Collection<String> groups) {
+		List<String> keys = new ArrayList<>(groups.size());
+		for (String group : groups) {
+			keys.add(groupKey(group));
+		}
+		return keys;
+	}
+	
+	/**
+	 * Keys a read of a player's memberships has to flush, writes removing all members of a group touch every player.
+	 */
+	private static List<String> playerReadKeys(UUID player) {
+		return Arrays.asList(playerKey(player), anyPlayerKey);
+	}
+	
+	/**
+	 * Starts a transaction for an operation which needs several statements. Held back writes for the groups
+	 * the unit touches are executed first, so they can't end up ordered after the unit's statements.
+	 * @param groups names of the groups the unit touches rows of held back writes for
+	 * @return the unit, has to be closed
+	 * @throws SQLException if no connection could be leased
+	 */
+	public UnitOfWork beginUnitOfWork(String... groups) throws SQLException {
+		writes.flush(groupKeys(Arrays.asList(groups)));
+		return new UnitOfWork(db.getConnection());
+	}
+	
+	/**
+	 * Executes all held back writes, call this before shutting down.
+	 */
+	public void close() {
+		flushTimestamps();
+		writes.shutdown();
 	}
 	
 	/**
@@ -493,118 +621,290 @@ public class GroupManagerDao {
 				"DELETE FROM permissionByGroup "
 						+ "WHERE role='" + PlayerType.NOT_BLACKLISTED +"' "
 						+ "AND perm_id=(SELECT perm_id FROM permissionIdMapping WHERE name='BASTION_PLACE');");
+		
+		db.registerMigration(15, false,
+				"create table if not exists group_change_log("
+						+ "id bigint not null auto_increment,"
+						+ "group_id int,"
+						+ "kind varchar(32) not null,"
+						+ "payload varchar(1024) not null,"
+						+ "created timestamp not null default current_timestamp,"
+						+ "primary key(id),"
+						+ "index group_change_log_created(created));");
 	}
 	
 	public int createGroup(String group, UUID owner, String password){
-		int ret = -1;
-		try (Connection connection = db.getConnection();
-				PreparedStatement createGroup = connection.prepareStatement(GroupManagerDao.createGroup)){
-			String own = null;
-			if (owner != null) own = owner.toString();
+		return createGroup(group, owner, password, Collections.emptyMap());
+	}
+	
+	/**
+	 * Creates a group together with its initial permissions in one transaction.
+	 * @param perms the permissions the new group starts out with
+	 * @return the id of the new group or -1 if it couldn't be created
+	 */
+	public int createGroup(String group, UUID owner, String password, Map<PlayerType, List<PermissionType>> perms){
+		String own = owner == null ? null : owner.toString();
+		try (UnitOfWork unit = beginUnitOfWork(group)) {
+			PreparedStatement createGroup = unit.prepare(GroupManagerDao.createGroup);
 			createGroup.setString(1, group);
 			createGroup.setString(2, own);
 			createGroup.setString(3, password);
 			createGroup.setInt(4, 0);
+			int ret;
 			try (ResultSet set = createGroup.executeQuery();)  {
 				ret = set.next() ? set.getInt("f.group_id") : -1;
-				logger.log(Level.INFO, "Created group {0} w/ id {1} for {2}", new Object[] {group, ret, own});
-			} catch (SQLException e) {
-				logger.log(Level.WARNING, "Problem creating group " + group, e);
-				ret = -1;
 			}
+			if (ret > -1) {
+				addAllPermissions(unit, ret, perms);
+			}
+			unit.commit();
+			logger.log(Level.INFO, "Created group {0} w/ id {1} for {2}", new Object[] {group, ret, own});
+			return ret;
 		} catch (SQLException e) {
-			logger.log(Level.WARNING, "Problem setting up query to create group " + group, e);
-			ret = -1;
+			logger.log(Level.WARNING, "Problem creating group " + group, e);
+			return -1;
 		}
-		
-		return ret;
 	}
 	
+	/**
+	 * Loads a group together with its members, all of its ids and its whole subgroup tree. Subgroups which
+	 * are already cached by the GroupManager are reused instead of being loaded again.
+	 * 
+	 * @param groupName the name of the group to load
+	 * @return the loaded group or null if no such group exists
+	 */
 	public Group getGroup(String groupName){
-		String name = null;
-		UUID owner = null;
-		boolean discipline = false;
-		String password = null;
-		int id = -1;
-		Timestamp timeStamp = null;
-		try (Connection connection = db.getConnection();
-				PreparedStatement getGroup = connection.prepareStatement(GroupManagerDao.getGroup)){
-			
-			getGroup.setString(1, groupName);
-			try (ResultSet set = getGroup.executeQuery()){
-				if (!set.next()) {
-					return null;
-				}
-				
-				name = set.getString(1);
-				String uuid = set.getString(2);
-				owner = (uuid != null) ? UUID.fromString(uuid) : null;
-				discipline = set.getInt(4) != 0;
-				password = set.getString(3);
-				id = set.getInt(5);
-				timeStamp = set.getTimestamp(6);
-			} catch (SQLException e) {
-				logger.log(Level.WARNING, "Problem getting group " + groupName, e);
-				return null;
-			}
+		try {
+			return loadGroup(groupName);
 		} catch (SQLException e) {
-			logger.log(Level.WARNING, "Problem preparing query to get group " + groupName, e);
+			logger.log(Level.WARNING, "Problem loading group " + groupName, e);
 			return null;
 		}
-		Group g = null;
-		try {
-			g = new Group(name, owner, discipline, password, id, timeStamp.getTime());
-		} catch (Exception e) {
-			logger.log(Level.WARNING, "Problem retrieving group " + groupName, e);
+	}
+	
+	/**
+	 * Like {@link #getGroup(String)}, but fails if the database can't be read, so a missing group can be told
+	 * apart from an error.
+	 * @param groupName the name of the group to load
+	 * @return the loaded group or null if no such group exists
+	 * @throws SQLException if the group couldn't be read
+	 */
+	public Group loadGroup(String groupName) throws SQLException {
+		if (groupName == null) {
+			return null;
+		}
+		try (Connection connection = db.getConnection()) {
+			return loadGroups(connection, Collections.singletonList(groupName), GroupManager::getCachedGroup)
+					.get(groupName.toLowerCase());
 		}
-		
-		// other group IDs cached via the constructor.
-		return g;
 	}
 	
 	public Group getGroup(int groupId){
-		String name = null;
-		UUID owner = null;
-		boolean dis = false;
-		String password = null;
-		int id = -1;
-		Timestamp timeStamp = null;
-		try (Connection connection = db.getConnection();
-				PreparedStatement getGroupById = connection.prepareStatement(GroupManagerDao.getGroupById)){
-			getGroupById.setInt(1, groupId);
-			try (ResultSet set = getGroupById.executeQuery();) {
-				if (!set.next()) {
-					return null;
+		try {
+			return loadGroup(groupId);
+		} catch (SQLException e) {
+			logger.log(Level.WARNING, "Problem getting group " + groupId, e);
+			return null;
+		}
+	}
+	
+	/**
+	 * Like {@link #getGroup(int)}, but fails if the database can't be read, so a missing group can be told
+	 * apart from an error.
+	 * @param groupId any id of the group to load
+	 * @return the loaded group or null if no such group exists
+	 * @throws SQLException if the group couldn't be read
+	 */
+	public Group loadGroup(int groupId) throws SQLException {
+		try (Connection connection = db.getConnection()) {
+			String name = null;
+			try (PreparedStatement getGroupNameById = connection.prepareStatement(GroupManagerDao.getGroupNameById)) {
+				getGroupNameById.setInt(1, groupId);
+				try (ResultSet set = getGroupNameById.executeQuery()) {
+					if (!set.next()) {
+						return null;
+					}
+					name = set.getString(1);
 				}
-
-				name = set.getString(1);
-				String uuid = set.getString(2);
-				owner = null;
-				if (uuid != null)
-					owner = UUID.fromString(uuid);
-				dis = set.getInt(4) != 0;
-				password = set.getString(3);
-				id = set.getInt(5);
-				timeStamp = set.getTimestamp(6);
-			} catch (SQLException e) {
-				logger.log(Level.WARNING, "Problem getting group " + groupId, e);
+			}
+			if (name == null) {
 				return null;
 			}
+			return loadGroups(connection, Collections.singletonList(name), GroupManager::getCachedGroup).get(name.toLowerCase());
+		}
+	}
+	
+	/**
+	 * Batched replacement for loading groups one by one. Headers, ids, members and subgroup edges are
+	 * fetched with a single query per level of the subgroup tree and the resulting groups are built
+	 * and linked without any further database access.
+	 * 
+	 * @param groupNames names of the groups to load
+	 * @param cached lookup for groups which are already loaded, these are linked as subgroups instead of being reloaded.
+	 *    May return null.
+	 * @return all groups which were loaded or reused, keyed by lower case name
+	 */
+	public Map<String, Group> loadGroups(Collection<String> groupNames, Function<String, Group> cached) {
+		try (Connection connection = db.getConnection()) {
+			return loadGroups(connection, groupNames, cached);
 		} catch (SQLException e) {
-			logger.log(Level.WARNING, "Problem preparing query to get group " + groupId, e);
-			return null;
+			logger.log(Level.WARNING, "Problem loading groups " + groupNames, e);
+			return new HashMap<>();
 		}
-		Group g = null;
-		try {
-			g = new Group(name, owner, dis, password, id, timeStamp.getTime());
-		} catch (Exception e) {
-			logger.log(Level.WARNING, "Problem retrieving group " + groupId, e);
+	}
+	
+	private Map<String, Group> loadGroups(Connection connection, Collection<String> groupNames,
+			Function<String, Group> cached) throws SQLException {
+		Map<String, GroupRecord> records = new HashMap<>();
+		Map<String, Group> result = new HashMap<>();
+		List<String[]> edges = new ArrayList<>();
+		Set<String> seen = new HashSet<>();
+		List<String> toLoad = new ArrayList<>();
+		for (String name : groupNames) {
+			if (name != null && seen.add(name.toLowerCase())) {
+				toLoad.add(name);
+			}
+		}
+		while (!toLoad.isEmpty()) {
+			// subgroups are only known level by level, so only their held back writes are executed
+			writes.flush(groupKeys(toLoad));
+			int edgesBefore = edges.size();
+			for (int i = 0; i < toLoad.size(); i += hydrateChunkSize) {
+				hydrateChunk(connection, toLoad.subList(i, Math.min(toLoad.size(), i + hydrateChunkSize)), records, edges);
+			}
+			// next level of the tree, only subgroups we don't know about yet
+			toLoad = new ArrayList<>();
+			for (String[] edge : edges.subList(edgesBefore, edges.size())) {
+				String sub = edge[1];
+				if (!seen.add(sub.toLowerCase())) {
+					continue;
+				}
+				Group known = cached == null ? null : cached.apply(sub);
+				if (known != null) {
+					result.put(sub.toLowerCase(), known);
+				} else {
+					toLoad.add(sub);
+				}
+			}
+		}
+		Set<Group> built = new HashSet<>();
+		for (Entry<String, GroupRecord> record : records.entrySet()) {
+			Group group = record.getValue().build();
+			if (group != null) {
+				result.put(record.getKey(), group);
+				built.add(group);
+			}
+		}
+		// only get subgroups, supergroups will set themselves
+		for (String[] edge : edges) {
+			Group superGroup = result.get(edge[0].toLowerCase());
+			if (superGroup != null && built.contains(superGroup)) {
+				Group.link(superGroup, result.get(edge[1].toLowerCase()), false);
+			}
+		}
+		return result;
+	}
+	
+	private void hydrateChunk(Connection connection, List<String> names, Map<String, GroupRecord> records,
+			List<String[]> edges) throws SQLException {
+		String placeholders = String.join(",", Collections.nCopies(names.size(), "?"));
+		try (PreparedStatement hydrate = connection.prepareStatement(
+				String.format(GroupManagerDao.hydrateGroups, placeholders, placeholders, placeholders))) {
+			int index = 1;
+			for (int pass = 0; pass < 3; pass++) {
+				for (String name : names) {
+					hydrate.setString(index++, name);
+				}
+			}
+			try (ResultSet set = hydrate.executeQuery()) {
+				while (set.next()) {
+					String groupName = set.getString(2);
+					if (groupName == null) {
+						continue;
+					}
+					switch (set.getString(1)) {
+					case "H":
+						records.computeIfAbsent(groupName.toLowerCase(), k -> new GroupRecord()).header(groupName,
+								set.getInt(3), set.getString(4), set.getString(5), set.getInt(6) != 0, set.getTimestamp(7));
+						break;
+					case "M":
+						String member = set.getString(4);
+						PlayerType role = PlayerType.getPlayerType(set.getString(5));
+						if (member != null && role != null) {
+							records.computeIfAbsent(groupName.toLowerCase(), k -> new GroupRecord()).member(
+									set.getInt(3), UUID.fromString(member), role);
+						}
+						break;
+					case "S":
+						String sub = set.getString(4);
+						if (sub != null) {
+							edges.add(new String[] {groupName, sub});
+						}
+						break;
+					default:
+						break;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Raw rows for a single group collected during hydration.
+	 */
+	private static class GroupRecord {
+		private String name;
+		private UUID owner;
+		private String password;
+		private boolean disciplined;
+		private long activityTimestamp;
+		private final Set<Integer> ids = new TreeSet<>();
+		private final Map<Integer, Integer> memberCounts = new HashMap<>();
+		private final Map<UUID, PlayerType> members = new HashMap<>();
+		
+		void header(String name, int id, String founder, String password, boolean disciplined, Timestamp timestamp) {
+			this.name = name;
+			this.owner = founder != null ? UUID.fromString(founder) : null;
+			this.password = password;
+			this.disciplined = disciplined;
+			this.activityTimestamp = timestamp != null ? timestamp.getTime() : System.currentTimeMillis();
+			ids.add(id);
+		}
+		
+		void member(int id, UUID uuid, PlayerType role) {
+			memberCounts.merge(id, 1, Integer::sum);
+			// a player showing up under several ids keeps the highest role, same as loading role by role did
+			PlayerType existing = members.get(uuid);
+			if (existing == null || existing.ordinal() < role.ordinal()) {
+				members.put(uuid, role);
+			}
+		}
+		
+		Group build() {
+			if (name == null) {
+				return null;
+			}
+			// default "root" id is the one with the most players
+			int primary = -1;
+			int mostMembers = -1;
+			for (int id : ids) {
+				int count = memberCounts.getOrDefault(id, 0);
+				if (count > mostMembers) {
+					mostMembers = count;
+					primary = id;
+				}
+			}
+			Group group = new Group(name, owner, disciplined, password, primary, activityTimestamp);
+			group.setGroupIds(new ArrayList<>(ids));
+			for (Entry<UUID, PlayerType> member : members.entrySet()) {
+				group.addMember(member.getKey(), member.getValue(), false);
+			}
+			return group;
 		}
-
-		return g;
 	}
 	
 	public List<String> getGroupNames(UUID uuid){
+		writes.flush(playerReadKeys(uuid));
 		List<String> groups = new ArrayList<String>();
 		try (Connection connection = db.getConnection();
 				PreparedStatement getAllGroupsNames = connection.prepareStatement(GroupManagerDao.getAllGroupsNames)){
@@ -622,7 +922,63 @@ public class GroupManagerDao {
 		return groups;
 	}
 	
+	/**
+	 * Gets all groups a player is a member of together with the player's role in them.
+	 * @param uuid the player
+	 * @return role by group name or null if the lookup failed
+	 */
+	public Map<String, PlayerType> getMemberships(UUID uuid){
+		writes.flush(playerReadKeys(uuid));
+		Map<String, PlayerType> memberships = new HashMap<>();
+		try (Connection connection = db.getConnection();
+				PreparedStatement getMemberships = connection.prepareStatement(GroupManagerDao.getMemberships)){
+			getMemberships.setString(1, uuid.toString());
+			try (ResultSet set = getMemberships.executeQuery();) {
+				while(set.next()) {
+					PlayerType role = PlayerType.getPlayerType(set.getString(2));
+					if (role == null) {
+						continue;
+					}
+					// a player showing up under several ids of a group keeps the highest role
+					memberships.merge(set.getString(1), role, (a, b) -> a.ordinal() >= b.ordinal() ? a : b);
+				}
+			} catch (SQLException e) {
+				logger.log(Level.WARNING, "Problem getting player's memberships " + uuid, e);
+				return null;
+			}
+		} catch (SQLException e) {
+			logger.log(Level.WARNING, "Problem preparing to get player's memberships " + uuid, e);
+			return null;
+		}
+		return memberships;
+	}
+	
+	/**
+	 * @param uuid the player
+	 * @return names of all groups the player founded or null if the lookup failed
+	 */
+	public List<String> getFoundedGroupNames(UUID uuid){
+		List<String> groups = new ArrayList<String>();
+		try (Connection connection = db.getConnection();
+				PreparedStatement getFoundedGroupNames = connection.prepareStatement(GroupManagerDao.getFoundedGroupNames)){
+			getFoundedGroupNames.setString(1, uuid.toString());
+			try (ResultSet set = getFoundedGroupNames.executeQuery();) {
+				while(set.next()) {
+					groups.add(set.getString(1));
+				}
+			} catch (SQLException e) {
+				logger.log(Level.WARNING, "Problem getting groups founded by " + uuid, e);
+				return null;
+			}
+		} catch (SQLException e) {
+			logger.log(Level.WARNING, "Problem preparing to get groups founded by " + uuid, e);
+			return null;
+		}
+		return groups;
+	}
+	
 	public List<String> getGroupNames(UUID uuid, String role){
+		writes.flush(playerReadKeys(uuid));
 		List<String> groups = new ArrayList<String>();
 		try (Connection connection = db.getConnection();
 				PreparedStatement getGroupNameFromRole = connection.prepareStatement(GroupManagerDao.getGroupNameFromRole)){
@@ -642,6 +998,7 @@ public class GroupManagerDao {
 	}
 	
 	public PlayerType getPlayerType(int groupid, UUID uuid){
+		writes.flush(playerReadKeys(uuid));
 		PlayerType ptype = null;
 		try (Connection connection = db.getConnection();
 				PreparedStatement getPlayerType = connection.prepareStatement(GroupManagerDao.getPlayerType)){
@@ -661,26 +1018,53 @@ public class GroupManagerDao {
 	}
 	
 	public void updateTimestampAsync(final String group){
-		plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable(){
-
-			@Override
-			public void run() {
-				updateTimestamp(group);
-			}
-			
-		});
+		writeAsync(() -> updateTimestamp(group));
 	}
 	
 	public void updateTimestamp(String group){
-		try (Connection connection = db.getConnection();
-				PreparedStatement updateLastTimestamp = connection.prepareStatement(GroupManagerDao.updateLastTimestamp)){
-			updateLastTimestamp.setString(1, group);
-			updateLastTimestamp.executeUpdate();
-		} catch (SQLException e) {
-			logger.log(Level.WARNING, "Problem updating timestamp for group " + group, e);
+		writes.submit(Collections.singletonList(groupKey(group)), updateLastTimestamp, "updating timestamp for group " + group, group);
+	}
+	
+	/**
+	 * Remembers that a group was active. Nothing is written until the next {@link #flushTimestamps()}, so
+	 * marking the same group over and over only costs a map update.
+	 * @param group the group name
+	 * @param timestamp when the group was active
+	 */
+	public void markTimestamp(String group, long timestamp){
+		dirtyTimestamps.merge(group, timestamp, Math::max);
+	}
+	
+	/**
+	 * Writes all activity marked since the last flush, as one batch.
+	 */
+	public void flushTimestamps(){
+		for (String group : dirtyTimestamps.keySet()) {
+			Long timestamp = dirtyTimestamps.remove(group);
+			if (timestamp != null) {
+				writes.submit(Collections.singletonList(groupKey(group)), setLastTimestamp, "updating timestamp for group " + group, new Timestamp(timestamp), group);
+			}
 		}
 	}
 	
+	/**
+	 * @return amount of groups whose activity wasn't written yet
+	 */
+	public int getDirtyTimestampCount(){
+		return dirtyTimestamps.size();
+	}
+	
+	/**
+	 * @return how far in ms a group's activity has to move before it is written again
+	 */
+	public long getTimestampPrecision(){
+		return timestampPrecision;
+	}
+	
+	public void setTimestampPrecision(long timestampPrecision){
+		this.timestampPrecision = timestampPrecision;
+	}
+	
 	public void deleteGroupAsync(final String groupName){
 		plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable(){
 
@@ -692,42 +1076,87 @@ public class GroupManagerDao {
 		});
 	}
 	
+	/**
+	 * Deletes a group and unlinks it from its supergroup and subgroups in one transaction.
+	 * @param groupName the group to delete
+	 */
 	public void deleteGroup(String groupName){
-		try (Connection connection = db.getConnection();
-				PreparedStatement deleteGroup = connection.prepareStatement(GroupManagerDao.deleteGroup)){
+		try (UnitOfWork unit = beginUnitOfWork(groupName)) {
+			PreparedStatement removeSuperGroups = unit.prepare(GroupManagerDao.removeSuperGroups);
+			removeSuperGroups.setString(1, groupName);
+			removeSuperGroups.executeUpdate();
+			// also removes the links to its subgroups
+			PreparedStatement deleteGroup = unit.prepare(GroupManagerDao.deleteGroup);
 			deleteGroup.setString(1, groupName);
 			deleteGroup.setString(2, NameLayerPlugin.getSpecialAdminGroup());
 			deleteGroup.executeUpdate();
+			unit.commit();
 		} catch (SQLException e) {
 			logger.log(Level.WARNING, "Problem deleting group " + groupName, e);
 		}
 	}
 	
 	public void addMemberAsync(final UUID member, final String faction, final PlayerType role){
-		plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable(){
-
-			@Override
-			public void run() {
-				addMember(member,faction,role);
-			}
-			
-		});
+		writeAsync(() -> addMember(member,faction,role));
 	}
 	
 	public void addMember(UUID member, String faction, PlayerType role){
-		try (Connection connection = db.getConnection();
-				PreparedStatement addMember = connection.prepareStatement(GroupManagerDao.addMember)){
-			addMember.setString(1, member.toString());
-			addMember.setString(2, role.name());
-			addMember.setString(3, faction);
-			addMember.executeUpdate();
-		} catch (SQLException e) {
-			logger.log(Level.WARNING, "Problem adding " + member + " as " + role.toString() 
-					+ " to group " + faction, e);
-		}			
+		writes.submit(Arrays.asList(groupKey(faction), playerKey(member)), addMember, "adding " + member + " as " + role.toString() + " to group " + faction,
+				member.toString(), role.name(), faction);
+	}
+	
+	/**
+	 * Adds or updates many members of a group with one statement per {@value #memberChunkSize} members.
+	 * @param faction the group name
+	 * @param members the role of each member
+	 */
+	public void addMembers(String faction, Map<UUID, PlayerType> members){
+		List<Entry<UUID, PlayerType>> entries = new ArrayList<>(members.entrySet());
+		for (int start = 0; start < entries.size(); start += memberChunkSize) {
+			List<Entry<UUID, PlayerType>> chunk = entries.subList(start, Math.min(entries.size(), start + memberChunkSize));
+			StringBuilder rows = new StringBuilder("select ? as member_name, ? as role");
+			Object[] params = new Object[chunk.size() * 2 + 1];
+			for (int i = 0; i < chunk.size(); i++) {
+				if (i > 0) {
+					rows.append(" union all select ?, ?");
+				}
+				params[i * 2] = chunk.get(i).getKey().toString();
+				params[i * 2 + 1] = chunk.get(i).getValue().name();
+			}
+			params[params.length - 1] = faction;
+			Set<String> keys = new HashSet<>();
+			keys.add(groupKey(faction));
+			for (Entry<UUID, PlayerType> member : chunk) {
+				keys.add(playerKey(member.getKey()));
+			}
+			writes.submit(keys, String.format(addMembers, rows), "adding " + chunk.size() + " members to group " + faction, params);
+		}
+	}
+	
+	/**
+	 * Removes many members from a group with one statement per {@value #memberChunkSize} members.
+	 * @param group the group name
+	 * @param members the members to remove
+	 */
+	public void removeMembers(String group, Collection<UUID> members){
+		List<UUID> uuids = new ArrayList<>(members);
+		for (int start = 0; start < uuids.size(); start += memberChunkSize) {
+			List<UUID> chunk = uuids.subList(start, Math.min(uuids.size(), start + memberChunkSize));
+			Object[] params = new Object[chunk.size() + 1];
+			params[0] = group;
+			Set<String> keys = new HashSet<>();
+			keys.add(groupKey(group));
+			for (int i = 0; i < chunk.size(); i++) {
+				params[i + 1] = chunk.get(i).toString();
+				keys.add(playerKey(chunk.get(i)));
+			}
+			writes.submit(keys, String.format(removeMembers, String.join(",", Collections.nCopies(chunk.size(), "?"))),
+					"removing " + chunk.size() + " members from group " + group, params);
+		}
 	}
 	
 	public List<UUID> getAllMembers(String groupName, PlayerType role){
+		writes.flush(Collections.singletonList(groupKey(groupName)));
 		List<UUID> members = new ArrayList<UUID>();
 		try (Connection connection = db.getConnection();
 				PreparedStatement getMembers = connection.prepareStatement(GroupManagerDao.getMembers)){
@@ -751,46 +1180,19 @@ public class GroupManagerDao {
 	}
 	
 	public void removeMemberAsync(final UUID member, final String group){
-		plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable(){
-
-			@Override
-			public void run() {
-				removeMember(member,group);
-			}
-			
-		});
+		writeAsync(() -> removeMember(member,group));
 	}
 	
 	public void removeMember(UUID member, String group){
-		try (Connection connection = db.getConnection();
-				PreparedStatement removeMember = connection.prepareStatement(GroupManagerDao.removeMember)){
-			removeMember.setString(1, member.toString());
-			removeMember.setString(2, group);
-			removeMember.executeUpdate();
-		} catch (SQLException e) {
-			logger.log(Level.WARNING, "Problem removing " + member + " from group " + group, e);
-		}
+		writes.submit(Arrays.asList(groupKey(group), playerKey(member)), removeMember, "removing " + member + " from group " + group, member.toString(), group);
 	}
 
 	public void removeAllMembersAsync(final String group){
-		plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable(){
-
-			@Override
-			public void run() {
-				removeAllMembers(group);
-			}
-			
-		});
+		writeAsync(() -> removeAllMembers(group));
 	}
 	
 	public void removeAllMembers(String group){
-		try (Connection connection = db.getConnection();
-				PreparedStatement removeAllMembers = connection.prepareStatement(GroupManagerDao.removeAllMembers)){
-			removeAllMembers.setString(1, group);
-			removeAllMembers.executeUpdate();
-		} catch (SQLException e) {
-			logger.log(Level.WARNING, "Problem removing all members from group " + group, e);
-		}
+		writes.submit(Arrays.asList(groupKey(group), anyPlayerKey), removeAllMembers, "removing all members from group " + group, group);
 	}
 	
 	public void addSubGroupAsync(final String group, final String subGroup){
@@ -804,6 +1206,28 @@ public class GroupManagerDao {
 		});
 	}
 	
+	/**
+	 * Links a subgroup under a group in one transaction, replacing whatever supergroup it had before.
+	 * @param group the new supergroup
+	 * @param subGroup the group to link under it
+	 */
+	public void linkGroups(String group, String subGroup){
+		try (UnitOfWork unit = beginUnitOfWork()) {
+			PreparedStatement removeSuperGroups = unit.prepare(GroupManagerDao.removeSuperGroups);
+			removeSuperGroups.setString(1, subGroup);
+			removeSuperGroups.executeUpdate();
+			PreparedStatement addSubGroup = unit.prepare(GroupManagerDao.addSubGroup);
+			addSubGroup.setString(1, subGroup);
+			addSubGroup.setString(2, group);
+			addSubGroup.executeUpdate();
+			removeCycles(unit);
+			unit.commit();
+		} catch (SQLException e) {
+			logger.log(Level.WARNING, "Problem linking subgroup " + subGroup
+					+ " to group " + group, e);
+		}
+	}
+	
 	public void addSubGroup(String group, String subGroup){
 		try (Connection connection = db.getConnection();
 				PreparedStatement addSubGroup = connection.prepareStatement(GroupManagerDao.addSubGroup)){
@@ -896,32 +1320,40 @@ public class GroupManagerDao {
 	}
 	
 	public void addAllPermissions(int groupId, Map <PlayerType, List <PermissionType>> perms) {
-		try (Connection connection = db.getConnection();
-				PreparedStatement addPermissionById = connection.prepareStatement(GroupManagerDao.addPermissionById)){
-			for (Entry <PlayerType, List <PermissionType>> entry: perms.entrySet()){
-				String role = entry.getKey().name();
-				for(PermissionType perm : entry.getValue()) {
-					addPermissionById.setInt(1,  groupId);
-					addPermissionById.setString(2, role);
-					addPermissionById.setInt(3, perm.getId());
-					addPermissionById.addBatch();
-				}
-			}
-			
-			int[] res = addPermissionById.executeBatch();
-			if (res == null) {
-				logger.log(Level.WARNING, "Failed to add all permissions to group {0}", groupId);
-			} else {
-				int cnt = 0;
-				for (int r : res) cnt += r;
-				logger.log(Level.INFO, "Added {0} of {1} permissions to group {2}",
-						new Object[] {cnt, res.length, groupId});
-			}
+		try (UnitOfWork unit = beginUnitOfWork()) {
+			addAllPermissions(unit, groupId, perms);
+			unit.commit();
 		} catch (SQLException e) {
 			logger.log(Level.WARNING, "Problem adding all permissions to group " + groupId, e);
 		}
 	}
 	
+	private void addAllPermissions(UnitOfWork unit, int groupId, Map <PlayerType, List <PermissionType>> perms) throws SQLException {
+		if (perms.isEmpty()) {
+			return;
+		}
+		PreparedStatement addPermissionById = unit.prepare(GroupManagerDao.addPermissionById);
+		for (Entry <PlayerType, List <PermissionType>> entry: perms.entrySet()){
+			String role = entry.getKey().name();
+			for(PermissionType perm : entry.getValue()) {
+				addPermissionById.setInt(1,  groupId);
+				addPermissionById.setString(2, role);
+				addPermissionById.setInt(3, perm.getId());
+				addPermissionById.addBatch();
+			}
+		}
+		
+		int[] res = addPermissionById.executeBatch();
+		if (res == null) {
+			logger.log(Level.WARNING, "Failed to add all permissions to group {0}", groupId);
+		} else {
+			int cnt = 0;
+			for (int r : res) cnt += r;
+			logger.log(Level.INFO, "Added {0} of {1} permissions to group {2}",
+					new Object[] {cnt, res.length, groupId});
+		}
+	}
+	
 	public void addPermissionAsync(final String gname, final String role, final List <PermissionType> perms){
 		plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable(){
 
@@ -1102,39 +1534,73 @@ public class GroupManagerDao {
 		
 	}
 	
-	public void mergeGroupAsync(final String groupname, final String tomerge){
-		plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable(){
-
-			@Override
-			public void run() {
-				mergeGroup(groupname,tomerge);
+	/**
+	 * Writes a merge computed in memory in one transaction. The merged group's members and links are replaced
+	 * by the delta, then its ids are handed to the remaining group, which brings along their permissions
+	 * and blacklist entries.
+	 * @param delta the merge
+	 * @return true if the merge was committed
+	 */
+	public boolean mergeGroup(MergeDelta delta){
+		String groupName = delta.getInto().getName();
+		String toMerge = delta.getMerged().getName();
+		try (UnitOfWork unit = beginUnitOfWork(groupName, toMerge)) {
+			PreparedStatement removeSuperGroups = unit.prepare(GroupManagerDao.removeSuperGroups);
+			removeSuperGroups.setString(1, toMerge);
+			removeSuperGroups.executeUpdate();
+			PreparedStatement removeSubGroups = unit.prepare(GroupManagerDao.removeSubGroups);
+			removeSubGroups.setString(1, toMerge);
+			removeSubGroups.executeUpdate();
+			PreparedStatement removeAllMembers = unit.prepare(GroupManagerDao.removeAllMembers);
+			removeAllMembers.setString(1, toMerge);
+			removeAllMembers.executeUpdate();
+			// members and links are added before the ids move, so they only go to the remaining group's own ids
+			if (!delta.getNewMembers().isEmpty()) {
+				PreparedStatement addMember = unit.prepare(GroupManagerDao.addMember);
+				for (Entry<UUID, PlayerType> member : delta.getNewMembers().entrySet()) {
+					addMember.setString(1, member.getKey().toString());
+					addMember.setString(2, member.getValue().name());
+					addMember.setString(3, groupName);
+					addMember.addBatch();
+				}
+				addMember.executeBatch();
 			}
-			
-		});
-	}
-	
-	public void mergeGroup(String groupName, String toMerge){
-		try (Connection connection = db.getConnection();
-				PreparedStatement mergeGroup = connection.prepareStatement(GroupManagerDao.mergeGroup);){
-			mergeGroup.setString(1, groupName);
-			mergeGroup.setString(2, toMerge);
-			mergeGroup.execute();
+			for (Group subgroup : delta.getSubgroups()) {
+				PreparedStatement addSubGroup = unit.prepare(GroupManagerDao.addSubGroup);
+				addSubGroup.setString(1, subgroup.getName());
+				addSubGroup.setString(2, groupName);
+				addSubGroup.executeUpdate();
+			}
+			PreparedStatement deleteFaction = unit.prepare(GroupManagerDao.deleteFaction);
+			deleteFaction.setString(1, toMerge);
+			deleteFaction.executeUpdate();
+			PreparedStatement renameGroupIds = unit.prepare(GroupManagerDao.renameGroupIds);
+			renameGroupIds.setString(1, groupName);
+			renameGroupIds.setString(2, toMerge);
+			renameGroupIds.executeUpdate();
+			removeCycles(unit);
+			unit.commit();
+			return true;
 		} catch (SQLException e) {
 			logger.log(Level.WARNING, "Problem merging group " + toMerge + " into " + groupName, e);
+			return false;
 		}
-		removeCycles();
 	}
 	
 	public void removeCycles() {
-		try (Connection connection = db.getConnection();
-				PreparedStatement removeCycles = connection.prepareStatement(GroupManagerDao.removeCycles);) {
-			int removed = removeCycles.executeUpdate();
-			logger.log(Level.INFO, "Removed {0} subgroup cycles", removed);
+		try (UnitOfWork unit = beginUnitOfWork()) {
+			removeCycles(unit);
+			unit.commit();
 		} catch (SQLException e) {
 			logger.log(Level.WARNING, "Failed to execute cycle removal code!");
 		}
 	}
 	
+	private void removeCycles(UnitOfWork unit) throws SQLException {
+		int removed = unit.prepare(GroupManagerDao.removeCycles).executeUpdate();
+		logger.log(Level.INFO, "Removed {0} subgroup cycles", removed);
+	}
+	
 	public void updatePasswordAsync(final String groupname, final String password){
 		plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable(){
 
@@ -1152,6 +1618,8 @@ public class GroupManagerDao {
 			updatePassword.setString(1, password);
 			updatePassword.setString(2, groupName);
 			updatePassword.executeUpdate();
+			// published here, so the async variant and other plugins writing through the dao are logged too
+			GroupManager.replicate(GroupDelta.invalidate(groupName));
 		} catch (SQLException e) {
 			logger.log(Level.WARNING, "Problem updating password for group " + groupName, e);
 		}
@@ -1345,6 +1813,28 @@ public class GroupManagerDao {
 		}
 	}
 	
+	/**
+	 * Makes a player founder of a group and a member with the OWNER role in one transaction.
+	 * @param group the group name
+	 * @param uuid the new owner
+	 */
+	public void transferGroup(String group, UUID uuid) {
+		try (UnitOfWork unit = beginUnitOfWork(group)) {
+			PreparedStatement addMember = unit.prepare(GroupManagerDao.addMember);
+			addMember.setString(1, uuid.toString());
+			addMember.setString(2, PlayerType.OWNER.name());
+			addMember.setString(3, group);
+			addMember.executeUpdate();
+			PreparedStatement updateOwner = unit.prepare(GroupManagerDao.updateOwner);
+			updateOwner.setString(1, uuid.toString());
+			updateOwner.setString(2, group);
+			updateOwner.executeUpdate();
+			unit.commit();
+		} catch (SQLException e) {
+			logger.log(Level.WARNING, "Problem transferring group " + group + " to " + uuid, e);
+		}
+	}
+	
 	public void setDisciplinedAsync(final Group group, final boolean disciplined){
 		plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable(){
 
@@ -1362,6 +1852,8 @@ public class GroupManagerDao {
 			updateDisciplined.setInt(1, disciplined ? 1 : 0);
 			updateDisciplined.setString(2, group.getName());
 			updateDisciplined.executeUpdate();
+			// published here, so the async variant and other plugins writing through the dao are logged too
+			GroupManager.replicate(GroupDelta.invalidate(group.getName()));
 		} catch (SQLException e) {
 			logger.log(Level.WARNING, "Problem setting disciplined of group " + group.getName() 
 					+ " to " + disciplined, e);
@@ -1370,50 +1862,20 @@ public class GroupManagerDao {
 
 	
 	public void addGroupInvitationAsync(final UUID uuid, final String groupName, final String role){
-		plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable(){
-
-			@Override
-			public void run() {
-				addGroupInvitation(uuid,groupName,role);
-			}
-			
-		});
+		writeAsync(() -> addGroupInvitation(uuid,groupName,role));
 	}
 	
 	public void addGroupInvitation(UUID uuid, String groupName, String role){
-		try (Connection connection = db.getConnection();
-				PreparedStatement addGroupInvitation = connection.prepareStatement(GroupManagerDao.addGroupInvitation);){
-			addGroupInvitation.setString(1, uuid.toString());
-			addGroupInvitation.setString(2, groupName);
-			addGroupInvitation.setString(3, role);
-			addGroupInvitation.executeUpdate();
-		} catch (SQLException e) {
-			logger.log(Level.WARNING, "Problem adding group " + groupName + " invite for "
-					+ uuid + " with role " + role, e);
-		}
+		writes.submit(Collections.singletonList(groupKey(groupName)), addGroupInvitation, "adding group " + groupName + " invite for " + uuid + " with role " + role,
+				uuid.toString(), groupName, role);
 	}
 	
 	public void removeGroupInvitationAsync(final UUID uuid, final String groupName){
-		plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable(){
-
-			@Override
-			public void run() {
-				removeGroupInvitation(uuid,groupName);
-			}
-			
-		});
+		writeAsync(() -> removeGroupInvitation(uuid,groupName));
 	}
 	
 	public void removeGroupInvitation(UUID uuid, String groupName){
-		try (Connection connection = db.getConnection();
-				PreparedStatement removeGroupInvitation = connection.prepareStatement(GroupManagerDao.removeGroupInvitation);){
-			removeGroupInvitation.setString(1, uuid.toString());
-			removeGroupInvitation.setString(2, groupName);
-			removeGroupInvitation.executeUpdate();
-		} catch (SQLException e) {
-			logger.log(Level.WARNING, "Problem removing group " + groupName + " invite for "
-					+ uuid, e);
-		}
+		writes.submit(Collections.singletonList(groupKey(groupName)), removeGroupInvitation, "removing group " + groupName + " invite for " + uuid, uuid.toString(), groupName);
 	}
 	
 	
@@ -1435,6 +1897,7 @@ public class GroupManagerDao {
 	
 	public void loadGroupInvitation(UUID playerUUID, Group group){
 		if(group == null) return;
+		writes.flush(Collections.singletonList(groupKey(group.getName())));
 		
 		try (Connection connection = db.getConnection();
 				PreparedStatement loadGroupInvitation = connection.prepareStatement(GroupManagerDao.loadGroupInvitation);){
@@ -1459,6 +1922,7 @@ public class GroupManagerDao {
 	}
 	
 	public Map<UUID, PlayerType> getInvitesForGroup(String groupName) {
+		writes.flush(Collections.singletonList(groupKey(groupName)));
 		Map <UUID, PlayerType> invs = new TreeMap<UUID, GroupManager.PlayerType>();
 		if (groupName == null) {
 			return invs;
@@ -1495,6 +1959,7 @@ public class GroupManagerDao {
 	 * Use this method to load all invitations to all groups.
 	 */
 	public void loadGroupsInvitations(){
+		writes.flush();
 		try (Connection connection = db.getConnection();
 				PreparedStatement loadGroupsInvitations = connection.prepareStatement(GroupManagerDao.loadGroupsInvitations);
 				ResultSet set = loadGroupsInvitations.executeQuery();) {
@@ -1568,50 +2033,25 @@ public class GroupManagerDao {
 	}
 	
 	public void addBlackListMemberAsync(final String groupName, final UUID uuid){
-		plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable(){
-
-			@Override
-			public void run() {
-				addBlackListMember(groupName,uuid);
-			}
-			
-		});
+		writeAsync(() -> addBlackListMember(groupName,uuid));
 	}
 	
 	public void addBlackListMember(String groupName, UUID player) {
-		try (Connection connection = db.getConnection();
-				PreparedStatement addBlacklistMember = connection.prepareStatement(GroupManagerDao.addBlacklistMember);){
-			addBlacklistMember.setString(1, player.toString());
-			addBlacklistMember.setString(2, groupName);
-			addBlacklistMember.executeUpdate();
-		} catch(SQLException e) {
-			logger.log(Level.WARNING, "Unable to add black list member " + player + " to group " + groupName, e);
-		}
+		writes.submit(Collections.singletonList(groupKey(groupName)), addBlacklistMember, "adding black list member " + player + " to group " + groupName,
+				player.toString(), groupName);
 	}
 	
 	public void removeBlackListMemberAsync(final String gname, final UUID uuid){
-		plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable(){
-
-			@Override
-			public void run() {
-				removeBlackListMember(gname,uuid);
-			}
-			
-		});
+		writeAsync(() -> removeBlackListMember(gname,uuid));
 	}
 	
 	public void removeBlackListMember(String groupName, UUID player) {
-		try (Connection connection = db.getConnection();
-				PreparedStatement removeBlackListMember = connection.prepareStatement(GroupManagerDao.removeBlackListMember);){
-			removeBlackListMember.setString(1, groupName);
-			removeBlackListMember.setString(2, player.toString());
-			removeBlackListMember.executeUpdate();
-		} catch(SQLException e) {
-			logger.log(Level.WARNING, "Unable to remove black list member " + player + " to group " + groupName, e);
-		}
+		writes.submit(Collections.singletonList(groupKey(groupName)), removeBlackListMember, "removing black list member " + player + " from group " + groupName,
+				groupName, player.toString());
 	}
 	
 	public Set<UUID> getBlackListMembers(String groupName) {
+		writes.flush(Collections.singletonList(groupKey(groupName)));
 		Set<UUID> uuids = new HashSet<UUID>();
 		try (Connection connection = db.getConnection();
 				PreparedStatement getBlackListMembers = connection.prepareStatement(GroupManagerDao.getBlackListMembers);){
@@ -1663,4 +2103,69 @@ public class GroupManagerDao {
 	}
 	
 	
+	/**
+	 * Appends a change to the change log other servers poll. Goes through the write queue, so it lands right
+	 * after the write it describes.
+	 * @param group name of the changed group, may be null
+	 * @param kind the kind of change
+	 * @param payload the encoded change
+	 */
+	public void addChange(String group, String kind, String payload) {
+		// nobody here reads the change log back, other servers poll it
+		writes.submit(Collections.emptyList(), addChange, "logging change " + payload, group, kind, payload);
+	}
+	
+	/**
+	 * @param afterId the last change id already seen
+	 * @param limit how many changes to return at most
+	 * @return encoded changes by id, in order, or null if they couldn't be read
+	 */
+	public TreeMap<Long, String> getChanges(long afterId, int limit) {
+		TreeMap<Long, String> changes = new TreeMap<>();
+		try (Connection connection = db.getConnection();
+				PreparedStatement getChanges = connection.prepareStatement(GroupManagerDao.getChanges)) {
+			getChanges.setLong(1, afterId);
+			getChanges.setInt(2, limit);
+			try (ResultSet set = getChanges.executeQuery()) {
+				while (set.next()) {
+					changes.put(set.getLong(1), set.getString(2));
+				}
+			}
+			return changes;
+		} catch (SQLException e) {
+			logger.log(Level.WARNING, "Problem reading changes after " + afterId, e);
+			return null;
+		}
+	}
+	
+	/**
+	 * @return id of the latest change, 0 if there is none, or -1 if it couldn't be read
+	 */
+	public long getLastChangeId() {
+		try (Connection connection = db.getConnection();
+				PreparedStatement getLastChangeId = connection.prepareStatement(GroupManagerDao.getLastChangeId);
+				ResultSet set = getLastChangeId.executeQuery()) {
+			return set.next() ? set.getLong(1) : 0;
+		} catch (SQLException e) {
+			logger.log(Level.WARNING, "Problem reading the latest change id", e);
+			return -1;
+		}
+	}
+	
+	/**
+	 * Deletes changes every server had plenty of time to read.
+	 * @param retention how old in seconds changes have to be
+	 * @return amount of deleted changes
+	 */
+	public int pruneChanges(long retention) {
+		try (Connection connection = db.getConnection();
+				PreparedStatement pruneChanges = connection.prepareStatement(GroupManagerDao.pruneChanges)) {
+			pruneChanges.setLong(1, retention);
+			return pruneChanges.executeUpdate();
+		} catch (SQLException e) {
+			logger.log(Level.WARNING, "Problem pruning the change log", e);
+			return 0;
+		}
+	}
+
 }
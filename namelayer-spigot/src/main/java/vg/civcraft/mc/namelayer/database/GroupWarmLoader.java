@@ -0,0 +1,284 @@
+package vg.civcraft.mc.namelayer.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import vg.civcraft.mc.civmodcore.dao.ManagedDatasource;
+import vg.civcraft.mc.namelayer.GroupManager.PlayerType;
+import vg.civcraft.mc.namelayer.group.Group;
+import vg.civcraft.mc.namelayer.permission.GroupPermission;
+import vg.civcraft.mc.namelayer.permission.PermissionType;
+
+/**
+ * Loads the entire group graph in one go, used at startup when warm loading is enabled. Every table is
+ * streamed with a forward-only cursor on its own connection. Groups are created from their headers first,
+ * then members, permissions and links are folded into them as they stream in, so no table is ever held in
+ * memory as a whole. Nothing is published to the caches here, see GroupManager for that.
+ */
+public class GroupWarmLoader {
+	private Logger logger;
+	private ManagedDatasource db;
+	private int fetchSize;
+	private int threads;
+	private int memberCount;
+	private int permCount;
+
+	private static final String streamGroups = "select group_name, founder, password, discipline_flags, last_timestamp from faction";
+	private static final String streamGroupIds = "select group_id, group_name from faction_id";
+	private static final String streamMembers = "select group_id, member_name, role from faction_member";
+	private static final String streamSubGroups = "select group_id, sub_group_id from subgroup";
+	private static final String streamPermissions = "select group_id, role, perm_id from permissionByGroup";
+
+	/**
+	 * @param logger logger to report to
+	 * @param db the datasource to stream from
+	 * @param fetchSize rows per round trip, 0 or less streams row by row
+	 * @param threads amount of threads used to stream tables, at most three are used
+	 */
+	public GroupWarmLoader(Logger logger, ManagedDatasource db, int fetchSize, int threads) {
+		this.logger = logger;
+		this.db = db;
+		// MySQL only streams with a positive fetch size if cursor fetching is on, MIN_VALUE streams in any case
+		this.fetchSize = fetchSize > 0 ? fetchSize : Integer.MIN_VALUE;
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Streams and assembles all groups. Reports how long this took and how much heap the result holds.
+	 *
+	 * @return the loaded groups or null if loading failed
+	 */
+	public Result load() {
+		long start = System.currentTimeMillis();
+		long heapBefore = usedHeap();
+		ExecutorService streams = Executors.newFixedThreadPool(Math.min(threads, 3));
+		try {
+			Result result = assemble(streams);
+			// measured once all per group leftovers of loading are unreachable
+			long heapUsed = usedHeap() - heapBefore;
+			logger.log(Level.INFO, "Warm loaded {0} groups with {1} members and {2} permissions in {3} ms, "
+					+ "holding roughly {4} MB of heap", new Object[] {result.groupsByName.size(), memberCount,
+					permCount, System.currentTimeMillis() - start, heapUsed / (1024 * 1024)});
+			return result;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.log(Level.WARNING, "Warm loading groups was interrupted, falling back to lazy loading", e);
+		} catch (ExecutionException e) {
+			logger.log(Level.WARNING, "Failed to warm load groups, falling back to lazy loading", e.getCause());
+		} finally {
+			streams.shutdownNow();
+		}
+		return null;
+	}
+
+	private Result assemble(ExecutorService streams) throws InterruptedException, ExecutionException {
+		// group headers and ids are one row per group, everything else is folded into the groups as it streams
+		List<Object[]> headerRows = new ArrayList<>();
+		List<Object[]> idRows = new ArrayList<>();
+		Future<?> headers = streams.submit(() -> stream(streamGroups, set -> headerRows.add(new Object[] {
+				set.getString(1), set.getString(2), set.getString(3), set.getInt(4) != 0, set.getTimestamp(5)})));
+		Future<?> ids = streams.submit(() -> stream(streamGroupIds, set -> idRows.add(new Object[] {
+				set.getInt(1), set.getString(2)})));
+		headers.get();
+		ids.get();
+
+		// group everything by lower case group name, ids are the only link between the tables
+		Map<String, GroupRows> rows = new HashMap<>();
+		for (Object[] header : headerRows) {
+			String name = (String) header[0];
+			if (name != null) {
+				rows.put(name.toLowerCase(), new GroupRows(header));
+			}
+		}
+		Map<Integer, GroupRows> rowsById = new HashMap<>();
+		for (Object[] id : idRows) {
+			String name = (String) id[1];
+			GroupRows group = name == null ? null : rows.get(name.toLowerCase());
+			if (group != null) {
+				rowsById.put((Integer) id[0], group);
+				group.ids.add((Integer) id[0]);
+			}
+		}
+		headerRows.clear();
+		idRows.clear();
+		Map<String, Group> groupsByName = new HashMap<>();
+		for (Map.Entry<String, GroupRows> entry : rows.entrySet()) {
+			groupsByName.put(entry.getKey(), entry.getValue().createGroup());
+		}
+
+		// each table is read by a single thread, so every group is only ever filled by one thread per table
+		Future<Integer> members = streams.submit(() -> {
+			int[] count = new int[1];
+			stream(streamMembers, set -> {
+				GroupRows group = rowsById.get(set.getInt(1));
+				if (group != null && group.addMember(set.getInt(1), set.getString(2), set.getString(3))) {
+					count[0]++;
+				}
+			});
+			return count[0];
+		});
+		Future<Integer> perms = streams.submit(() -> {
+			int[] count = new int[1];
+			stream(streamPermissions, set -> {
+				GroupRows group = rowsById.get(set.getInt(1));
+				if (group != null && group.addPermission(set.getString(2), set.getInt(3))) {
+					count[0]++;
+				}
+			});
+			return count[0];
+		});
+		// linking touches two groups at once, so it stays on this one stream
+		Future<?> edges = streams.submit(() -> stream(streamSubGroups, set -> {
+			GroupRows superGroup = rowsById.get(set.getInt(1));
+			GroupRows subGroup = rowsById.get(set.getInt(2));
+			if (superGroup != null && subGroup != null) {
+				Group.link(superGroup.group, subGroup.group, false);
+			}
+		}));
+		memberCount = members.get();
+		permCount = perms.get();
+		edges.get();
+
+		Map<Integer, Group> groupsById = new HashMap<>();
+		for (Map.Entry<Integer, GroupRows> id : rowsById.entrySet()) {
+			groupsById.put(id.getKey(), id.getValue().group);
+		}
+		Map<Group, GroupPermission> permissions = new HashMap<>();
+		for (GroupRows group : rows.values()) {
+			group.choosePrimaryId();
+			permissions.put(group.group, new GroupPermission(group.group, group.perms));
+		}
+		return new Result(groupsByName, groupsById, permissions);
+	}
+
+	private Void stream(String query, RowReader reader) throws SQLException {
+		try (Connection connection = db.getConnection();
+				PreparedStatement statement = connection.prepareStatement(query,
+						ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+			statement.setFetchSize(fetchSize);
+			try (ResultSet set = statement.executeQuery()) {
+				while (set.next()) {
+					reader.read(set);
+				}
+			}
+		}
+		return null;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	@FunctionalInterface
+	private interface RowReader {
+		void read(ResultSet set) throws SQLException;
+	}
+
+	/**
+	 * One group while it is being loaded, filled row by row from the member and permission streams.
+	 */
+	private static class GroupRows {
+		private final Object[] header;
+		private final List<Integer> ids = new ArrayList<>();
+		private final Map<Integer, Integer> memberCounts = new HashMap<>();
+		private final Map<PlayerType, List<PermissionType>> perms = new HashMap<>();
+		private Group group;
+
+		GroupRows(Object[] header) {
+			this.header = header;
+		}
+
+		Group createGroup() {
+			String founder = (String) header[1];
+			Timestamp timestamp = (Timestamp) header[4];
+			// the primary id depends on the members, it is chosen once they are all in
+			group = new Group((String) header[0], founder != null ? UUID.fromString(founder) : null,
+					(Boolean) header[3], (String) header[2], ids.isEmpty() ? -1 : ids.get(0),
+					timestamp != null ? timestamp.getTime() : System.currentTimeMillis());
+			group.setGroupIds(ids);
+			return group;
+		}
+
+		/**
+		 * @return true if the row named a valid member
+		 */
+		boolean addMember(int id, String member, String roleName) {
+			PlayerType role = PlayerType.getPlayerType(roleName);
+			if (member == null || role == null) {
+				return false;
+			}
+			memberCounts.merge(id, 1, Integer::sum);
+			UUID uuid = UUID.fromString(member);
+			PlayerType existing = group.getCurrentRank(uuid);
+			if (existing == null || existing.ordinal() < role.ordinal()) {
+				group.addMember(uuid, role, false);
+			}
+			return true;
+		}
+
+		/**
+		 * @return true if the row named a known role and permission
+		 */
+		boolean addPermission(String roleName, int permId) {
+			PlayerType type = PlayerType.getPlayerType(roleName);
+			PermissionType permission = PermissionType.getPermission(permId);
+			if (type == null || permission == null) {
+				return false;
+			}
+			List<PermissionType> list = perms.computeIfAbsent(type, k -> new ArrayList<>());
+			if (!list.contains(permission)) {
+				list.add(permission);
+			}
+			return true;
+		}
+
+		void choosePrimaryId() {
+			// default "root" id is the one with the most players
+			int primary = -1;
+			int mostMembers = -1;
+			for (int id : ids) {
+				int count = memberCounts.getOrDefault(id, 0);
+				if (count > mostMembers || (count == mostMembers && id < primary)) {
+					mostMembers = count;
+					primary = id;
+				}
+			}
+			if (primary != group.getGroupId()) {
+				// replaces the primary id, setGroupIds puts the old one back among the others
+				group.setGroupId(primary);
+				group.setGroupIds(ids);
+			}
+		}
+	}
+
+	/**
+	 * Everything a warm load produced, ready to be published into the caches.
+	 */
+	public static class Result {
+		public final Map<String, Group> groupsByName;
+		public final Map<Integer, Group> groupsById;
+		public final Map<Group, GroupPermission> permissions;
+
+		public Result(Map<String, Group> groupsByName, Map<Integer, Group> groupsById,
+				Map<Group, GroupPermission> permissions) {
+			this.groupsByName = groupsByName;
+			this.groupsById = groupsById;
+			this.permissions = permissions;
+		}
+	}
+}
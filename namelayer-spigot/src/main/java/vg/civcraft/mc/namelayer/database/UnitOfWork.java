@@ -0,0 +1,72 @@
+package vg.civcraft.mc.namelayer.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs several statements as one transaction on a single leased connection. Statements are prepared once
+ * per unit and reused, nothing is visible to others until {@link #commit()} and anything not committed
+ * when the unit is closed is rolled back. Get one from {@link GroupManagerDao#beginUnitOfWork()}.
+ */
+public class UnitOfWork implements AutoCloseable {
+
+	private final Connection connection;
+	private final Map<String, PreparedStatement> statements = new HashMap<>();
+	private boolean committed;
+
+	UnitOfWork(Connection connection) throws SQLException {
+		this.connection = connection;
+		try {
+			connection.setAutoCommit(false);
+		} catch (SQLException e) {
+			connection.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @param sql the statement
+	 * @return the statement prepared on this unit's connection, with its parameters cleared if it was used before
+	 * @throws SQLException if the statement can't be prepared
+	 */
+	public PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement statement = statements.get(sql);
+		if (statement == null) {
+			statement = connection.prepareStatement(sql);
+			statements.put(sql, statement);
+		} else {
+			statement.clearParameters();
+		}
+		return statement;
+	}
+
+	/**
+	 * Makes everything done in this unit visible at once.
+	 * @throws SQLException if the commit failed, the unit is rolled back when it's closed
+	 */
+	public void commit() throws SQLException {
+		connection.commit();
+		committed = true;
+	}
+
+	/**
+	 * Rolls back unless the unit was committed and hands the connection back.
+	 */
+	@Override
+	public void close() throws SQLException {
+		try {
+			if (!committed) {
+				connection.rollback();
+			}
+			for (PreparedStatement statement : statements.values()) {
+				statement.close();
+			}
+			connection.setAutoCommit(true);
+		} finally {
+			connection.close();
+		}
+	}
+}
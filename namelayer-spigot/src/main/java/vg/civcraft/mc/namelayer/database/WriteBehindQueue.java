@@ -0,0 +1,326 @@
+package vg.civcraft.mc.namelayer.database;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import vg.civcraft.mc.civmodcore.dao.ManagedDatasource;
+
+/**
+ * Collects small writes and runs them on a dedicated thread, at most maxDelay ms after they were submitted.
+ * Writes are executed in the order they were submitted, consecutive writes using the same statement share a
+ * single JDBC batch. Every write names keys for what it touches, like a group or a player. Anything reading
+ * rows these writes touch has to {@link #flush(Collection)} the keys it reads first, which only executes
+ * writes if some of them are still pending for those keys.
+ */
+public class WriteBehindQueue {
+
+	private final Logger logger;
+	private final ConnectionSource db;
+	private final long maxDelay;
+	private final int batchSize;
+
+	private final BlockingQueue<Write> queue = new LinkedBlockingQueue<>();
+	private final Object signal = new Object();
+	private final Object flushLock = new Object();
+	// submitted writes which didn't finish executing yet, including the ones a flush already took off the queue
+	private final AtomicInteger pending = new AtomicInteger();
+	// same as pending, by the keys of the writes
+	private final Map<String, Integer> pendingByKey = new ConcurrentHashMap<>();
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final Thread worker;
+	private volatile boolean running;
+
+	/**
+	 * @param maxDelay how long in ms a write may wait for others to batch with, 0 or less executes every write right away
+	 * @param batchSize how many writes are flushed without waiting for maxDelay
+	 */
+	public WriteBehindQueue(Logger logger, ManagedDatasource db, long maxDelay, int batchSize) {
+		this(logger, db::getConnection, maxDelay, batchSize);
+	}
+
+	/**
+	 * @param db where connections for the writes come from
+	 * @param maxDelay how long in ms a write may wait for others to batch with, 0 or less executes every write right away
+	 * @param batchSize how many writes are flushed without waiting for maxDelay
+	 */
+	WriteBehindQueue(Logger logger, ConnectionSource db, long maxDelay, int batchSize) {
+		this.logger = logger;
+		this.db = db;
+		this.maxDelay = maxDelay;
+		this.batchSize = Math.max(1, batchSize);
+		this.running = maxDelay > 0;
+		if (running) {
+			worker = new Thread(this::run, "NameLayer write-behind");
+			worker.setDaemon(true);
+			worker.start();
+		} else {
+			worker = null;
+		}
+	}
+
+	/**
+	 * Queues a write.
+	 * @param keys what the write touches, reads flushing any of these keys wait for it
+	 * @param sql the statement, writes with the same statement are batched
+	 * @param description what the write does, for the log if it fails
+	 * @param params the statement's parameters
+	 */
+	public void submit(Collection<String> keys, String sql, String description, Object... params) {
+		Write write = new Write(keys, sql, description, params);
+		pending.incrementAndGet();
+		for (String key : write.keys) {
+			pendingByKey.merge(key, 1, Integer::sum);
+		}
+		queue.add(write);
+		if (!running) {
+			// disabled or shutting down, behave like a plain write
+			flush();
+			return;
+		}
+		int depth = queue.size();
+		if (depth == 1 || depth >= batchSize) {
+			synchronized (signal) {
+				signal.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Executes everything queued so far on the calling thread. Writes another thread is executing at the
+	 * same time are waited for, so everything submitted before is in the database once this returns.
+	 */
+	public void flush() {
+		if (pending.get() == 0) {
+			return;
+		}
+		synchronized (flushLock) {
+			List<Write> writes = new ArrayList<>();
+			while (queue.drainTo(writes, batchSize) > 0) {
+				executeAndRelease(writes);
+				writes.clear();
+			}
+		}
+	}
+
+	/**
+	 * Makes sure every write submitted before for any of the keys is in the database once this returns. Returns
+	 * right away if there are none. Otherwise the queue is executed up to the last such write, writes before
+	 * it are executed too so nothing runs out of order.
+	 * @param keys what the caller is about to read
+	 */
+	public void flush(Collection<String> keys) {
+		if (!isPending(keys)) {
+			return;
+		}
+		synchronized (flushLock) {
+			// nobody else executes while the lock is held, so whatever is still pending for the keys is queued.
+			// Only flushes take writes off the queue, so the part iterated here stays as it is
+			int count = 0;
+			int last = -1;
+			for (Write write : queue) {
+				if (write.touchesAny(keys)) {
+					last = count;
+				}
+				count++;
+			}
+			List<Write> writes = new ArrayList<>();
+			int left = last + 1;
+			while (left > 0 && queue.drainTo(writes, Math.min(left, batchSize)) > 0) {
+				left -= writes.size();
+				executeAndRelease(writes);
+				writes.clear();
+			}
+		}
+	}
+
+	private boolean isPending(Collection<String> keys) {
+		for (String key : keys) {
+			if (pendingByKey.containsKey(key)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void executeAndRelease(List<Write> writes) {
+		try {
+			execute(writes);
+		} finally {
+			pending.addAndGet(-writes.size());
+			for (Write write : writes) {
+				for (String key : write.keys) {
+					pendingByKey.computeIfPresent(key, (k, amount) -> amount == 1 ? null : amount - 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops the worker and executes everything which is still queued. Writes submitted afterwards run right away.
+	 */
+	public void shutdown() {
+		running = false;
+		if (worker != null) {
+			synchronized (signal) {
+				signal.notifyAll();
+			}
+			try {
+				worker.join(10000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		flush();
+	}
+
+	/**
+	 * @return true if writes are held back and batched, false if they run right away on the submitting thread
+	 */
+	public boolean isBatching() {
+		return running;
+	}
+
+	/**
+	 * @return amount of writes waiting to be executed
+	 */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	public long getWritten() {
+		return written.get();
+	}
+
+	public long getFailed() {
+		return failed.get();
+	}
+
+	private void run() {
+		while (running) {
+			try {
+				synchronized (signal) {
+					while (running && queue.isEmpty()) {
+						signal.wait();
+					}
+					// give more writes a chance to pile up, unless there are enough for a batch already
+					if (running && queue.size() < batchSize) {
+						signal.wait(maxDelay);
+					}
+				}
+			} catch (InterruptedException e) {
+				break;
+			}
+			try {
+				flush();
+			} catch (RuntimeException e) {
+				logger.log(Level.WARNING, "Problem flushing queued writes", e);
+			}
+		}
+	}
+
+	private void execute(List<Write> writes) {
+		try (Connection connection = db.getConnection()) {
+			int start = 0;
+			while (start < writes.size()) {
+				String sql = writes.get(start).sql;
+				int end = start + 1;
+				while (end < writes.size() && writes.get(end).sql.equals(sql)) {
+					end++;
+				}
+				executeBatch(connection, writes.subList(start, end));
+				start = end;
+			}
+		} catch (SQLException e) {
+			failed.addAndGet(writes.size());
+			logger.log(Level.WARNING, "Problem getting a connection for " + writes.size() + " queued writes, first one: "
+					+ writes.get(0).description, e);
+		}
+	}
+
+	private void executeBatch(Connection connection, List<Write> batch) {
+		try (PreparedStatement statement = connection.prepareStatement(batch.get(0).sql)) {
+			if (batch.size() == 1) {
+				batch.get(0).bind(statement);
+				statement.executeUpdate();
+			} else {
+				for (Write write : batch) {
+					write.bind(statement);
+					statement.addBatch();
+				}
+				statement.executeBatch();
+			}
+			written.addAndGet(batch.size());
+		} catch (BatchUpdateException e) {
+			// the driver may have stopped at the failing write, whatever it didn't get to is retried
+			int[] counts = e.getUpdateCounts();
+			for (int i = 0; i < batch.size(); i++) {
+				if (i >= counts.length) {
+					executeBatch(connection, singletonList(batch.get(i)));
+				} else if (counts[i] == Statement.EXECUTE_FAILED) {
+					failed.incrementAndGet();
+					logger.log(Level.WARNING, "Problem " + batch.get(i).description, e);
+				} else {
+					written.incrementAndGet();
+				}
+			}
+		} catch (SQLException e) {
+			failed.addAndGet(batch.size());
+			logger.log(Level.WARNING, "Problem " + batch.get(0).description
+					+ (batch.size() > 1 ? " and " + (batch.size() - 1) + " more writes like it" : ""), e);
+		}
+	}
+
+	private static List<Write> singletonList(Write write) {
+		List<Write> list = new ArrayList<>(1);
+		list.add(write);
+		return list;
+	}
+
+	@FunctionalInterface
+	interface ConnectionSource {
+		Connection getConnection() throws SQLException;
+	}
+
+	private static final class Write {
+		private final Collection<String> keys;
+		private final String sql;
+		private final String description;
+		private final Object[] params;
+
+		Write(Collection<String> keys, String sql, String description, Object[] params) {
+			this.keys = keys;
+			this.sql = sql;
+			this.description = description;
+			this.params = params;
+		}
+
+		boolean touchesAny(Collection<String> other) {
+			for (String key : other) {
+				if (keys.contains(key)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		void bind(PreparedStatement statement) throws SQLException {
+			for (int i = 0; i < params.length; i++) {
+				statement.setObject(i + 1, params[i]);
+			}
+		}
+	}
+}
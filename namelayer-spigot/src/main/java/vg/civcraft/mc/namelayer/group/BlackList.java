@@ -5,7 +5,9 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import vg.civcraft.mc.namelayer.GroupManager;
 import vg.civcraft.mc.namelayer.NameLayerPlugin;
+import vg.civcraft.mc.namelayer.replication.GroupDelta;
 
 public class BlackList {
 	private Map<String, Set<UUID>> blackListsByGroupName;
@@ -63,8 +65,10 @@ public class BlackList {
 		}
 		if (ids != null && !ids.contains(uuid)) {
 			ids.add(uuid);
+			invalidateEffectivePermissions(groupName, uuid);
 			if (writeToDb) {
 				NameLayerPlugin.getGroupManagerDao().addBlackListMember(groupName, uuid);
+				GroupManager.replicate(GroupDelta.ofPlayer(GroupDelta.Kind.BLACKLIST_ADD, groupName, uuid));
 			}
 		}
 	}
@@ -81,12 +85,29 @@ public class BlackList {
 		}
 		if (ids != null && ids.contains(uuid)) {
 			ids.remove(uuid);
+			invalidateEffectivePermissions(groupName, uuid);
 			if (writeToDb) {
 				NameLayerPlugin.getGroupManagerDao().removeBlackListMember(groupName, uuid);
+				GroupManager.replicate(GroupDelta.ofPlayer(GroupDelta.Kind.BLACKLIST_REMOVE, groupName, uuid));
 			}
 		}
 	}
 	
+	private void invalidateEffectivePermissions(String groupName, UUID uuid) {
+		Group group = GroupManager.getCachedGroup(groupName);
+		if (group != null) {
+			group.invalidateEffectivePermissions(uuid);
+		}
+	}
+	
+	/**
+	 * @param groupName the group
+	 * @return true if the group's blacklist is loaded
+	 */
+	public boolean isCached(String groupName) {
+		return blackListsByGroupName.containsKey(groupName);
+	}
+	
 	public void removeFromCache(String groupName) {
 		blackListsByGroupName.remove(groupName);
 	}
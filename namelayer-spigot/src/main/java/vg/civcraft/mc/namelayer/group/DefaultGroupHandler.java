@@ -3,8 +3,10 @@ package vg.civcraft.mc.namelayer.group;
 import java.util.Map;
 import java.util.UUID;
 import org.bukkit.entity.Player;
+import vg.civcraft.mc.namelayer.GroupManager;
 import vg.civcraft.mc.namelayer.NameLayerPlugin;
 import vg.civcraft.mc.namelayer.database.GroupManagerDao;
+import vg.civcraft.mc.namelayer.replication.GroupDelta;
 
 public class DefaultGroupHandler {
 	
@@ -42,10 +44,27 @@ public class DefaultGroupHandler {
 			else {
 				dao.changeDefaultGroup(uuid, g.getName());
 			}
+			GroupManager.replicate(GroupDelta.ofPlayer(GroupDelta.Kind.DEFAULT_GROUP, g.getName(), uuid));
 		}
 		defaultGroups.put(uuid, g.getName());
 	}
 	
+	/**
+	 * Remembers a default group another server set, without touching the database.
+	 * @param uuid the player
+	 * @param groupName name of their new default group
+	 */
+	public void cacheDefaultGroup(UUID uuid, String groupName) {
+		defaultGroups.put(uuid, groupName);
+	}
+	
+	/**
+	 * Reads all default groups from the database again, for changes which weren't applied one by one.
+	 */
+	public void reload() {
+		defaultGroups = dao.getAllDefaultGroups();
+	}
+	
 	public String recacheDefaultGroup(UUID uuid) {
 		String gName = dao.getDefaultGroup(uuid);
 		defaultGroups.put(uuid, gName);
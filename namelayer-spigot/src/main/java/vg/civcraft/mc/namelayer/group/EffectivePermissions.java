@@ -0,0 +1,73 @@
+package vg.civcraft.mc.namelayer.group;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import vg.civcraft.mc.namelayer.permission.PermissionType;
+
+/**
+ * Memoizes the permissions players effectively have in one group, meaning everything granted to their role
+ * in the group or in any of its supergroups. Each player's permissions are a bitset indexed by
+ * {@link PermissionType#getId()}. The owning group drops entries whenever something they were resolved
+ * from changes, see {@link Group#invalidateEffectivePermissions(UUID)}.
+ */
+public class EffectivePermissions {
+
+	// players touching a group at least once would otherwise pile up forever on busy groups
+	private static final int MAX_PLAYERS = 1024;
+
+	private final Map<UUID, long[]> byPlayer = new ConcurrentHashMap<>();
+	private final AtomicInteger version = new AtomicInteger();
+
+	/**
+	 * @param player the player
+	 * @return the memoized bitset or null if it has to be resolved
+	 */
+	public long[] get(UUID player) {
+		return byPlayer.get(player);
+	}
+
+	/**
+	 * @return the version to pass to {@link #put(UUID, long[], int)}, read it before resolving
+	 */
+	public int getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * Memoizes resolved permissions, unless something was invalidated while they were being resolved.
+	 * @param player the player
+	 * @param permissions the resolved bitset, must not be modified afterwards
+	 * @param resolvedAt the version read before resolving
+	 */
+	public void put(UUID player, long[] permissions, int resolvedAt) {
+		if (byPlayer.size() >= MAX_PLAYERS) {
+			byPlayer.clear();
+		}
+		byPlayer.put(player, permissions);
+		// invalidation bumps the version before removing, so a racing resolve is caught here
+		if (version.get() != resolvedAt) {
+			byPlayer.remove(player, permissions);
+		}
+	}
+
+	void invalidate(UUID player) {
+		version.incrementAndGet();
+		if (player == null) {
+			byPlayer.clear();
+		} else {
+			byPlayer.remove(player);
+		}
+	}
+
+	/**
+	 * @param permissions a bitset of permission ids
+	 * @param perm the permission to test
+	 * @return true if the permission is in the bitset
+	 */
+	public static boolean has(long[] permissions, PermissionType perm) {
+		int word = perm.getId() >>> 6;
+		return word < permissions.length && (permissions[word] & (1L << perm.getId())) != 0;
+	}
+}
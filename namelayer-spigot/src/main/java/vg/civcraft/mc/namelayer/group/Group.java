@@ -1,93 +1,177 @@
 package vg.civcraft.mc.namelayer.group;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import vg.civcraft.mc.namelayer.GroupManager;
 import vg.civcraft.mc.namelayer.GroupManager.PlayerType;
 import vg.civcraft.mc.namelayer.NameAPI;
 import vg.civcraft.mc.namelayer.NameLayerPlugin;
 import vg.civcraft.mc.namelayer.database.GroupManagerDao;
+import vg.civcraft.mc.namelayer.replication.GroupDelta;
 
 public class Group {
 	
 	private static GroupManagerDao db;
 	
-	private String name;
-	private String password;
-	private UUID owner;
-	private boolean isDisciplined; // if true, prevents any interactions with this group
-	private boolean isValid = true;  // if false, then group has recently been deleted and is invalid
-	private int id;
+	private volatile String name;
+	private volatile String password;
+	private volatile UUID owner;
+	private volatile boolean isDisciplined; // if true, prevents any interactions with this group
+	private volatile boolean isValid = true;  // if false, then group has recently been deleted and is invalid
+	private volatile int id;
 	private Set<Integer> ids = Sets.<Integer>newConcurrentHashSet();
 		
-	private Group supergroup;
+	private volatile Group supergroup;
 	private Set<Group> subgroups = Sets.<Group>newConcurrentHashSet();
-	private Map<UUID, PlayerType> players = Maps.<UUID, PlayerType>newHashMap();
-	private Map<UUID, PlayerType> invites = Maps.<UUID, PlayerType>newHashMap();
+	private MemberTable players = new MemberTable();
+	private MemberTable invites = new MemberTable();
 	private long activityTimestamp;
-	
-	public Group(String name, UUID owner, boolean disciplined, 
+	// last activity handed to the database, see updateActivityTimeStamp()
+	private long persistedActivityTimestamp;
+	private final EffectivePermissions effectivePermissions = new EffectivePermissions();
+	// bumped before and after every change, a snapshot taken at an older version is rebuilt on the next read
+	private final AtomicLong version = new AtomicLong();
+	// changes in progress, snapshots are only built while there are none
+	private final AtomicInteger changing = new AtomicInteger();
+	private volatile GroupSnapshot snapshot;
+	// built on the first lookup by name, kept up to date from then on
+	private volatile MemberNameIndex nameIndex;
+	// only touched by GroupCache to decide what to evict
+	volatile long lastCacheAccess;
+	volatile long lastAccessCheck;
+	
+	/**
+	 * Creates a bare group object. This does not touch the database; members, additional ids and
+	 * subgroups are filled in by whoever loads the group, see GroupManagerDao.loadGroups().
+	 */
+	public Group(String name, UUID owner, boolean disciplined,
 			String password, int id, long activityTimestamp) {
 		if (db == null) {
 			db = NameLayerPlugin.getGroupManagerDao();
 		}
-		
+
 		this.name = name;
 		this.password = password;
 		this.owner = owner;
 		this.isDisciplined = disciplined;
 		this.activityTimestamp = activityTimestamp;
-		
-		if (name == null) {
-			this.ids.add(id);
-			this.id = id;
-			return;
-		}
+		this.persistedActivityTimestamp = activityTimestamp;
+		this.ids.add(id);
+		this.id = id;
+	}
+	
+	public long getActivityTimeStamp() {
+		return activityTimestamp;
+	}
 	
-		for (PlayerType permission : PlayerType.values()) {
-			List<UUID> list = db.getAllMembers(name, permission);
-			for (UUID uuid : list) {
-				players.put(uuid, permission);
+	/**
+	 * Marks the group as active now. The database only hears about it once the activity moved by more than the
+	 * configured precision, and then with the next periodic batch.
+	 */
+	public void updateActivityTimeStamp() {
+		long now = System.currentTimeMillis();
+		this.activityTimestamp = now;
+		if (now - persistedActivityTimestamp >= db.getTimestampPrecision()) {
+			persistedActivityTimestamp = now;
+			db.markTimestamp(name, now);
+		}
+	}
+	
+	/**
+	 * Rough estimate of the heap this group holds, used to keep the group cache within its memory budget.
+	 * @return estimated size in bytes
+	 */
+	long estimateMemory() {
+		// object headers and fields, the member tables, roughly one set node per id and two map entries plus
+		// a name per indexed member
+		MemberNameIndex index = nameIndex;
+		return 256L + players.estimateMemory() + invites.estimateMemory() + ids.size() * 48L
+				+ (index == null ? 0 : index.size() * 160L);
+	}
+	
+	/**
+	 * Gets the current state of the group as an immutable snapshot, which is safe to read from any thread
+	 * without locking. Snapshots are only rebuilt on the first read after a change, so reading one repeatedly
+	 * is cheap.
+	 * @return the current state of the group
+	 */
+	public GroupSnapshot getSnapshot() {
+		while (true) {
+			long current = version.get();
+			if (changing.get() == 0) {
+				GroupSnapshot cached = snapshot;
+				if (cached != null && cached.getVersion() == current) {
+					return cached;
+				}
+				Group parent = supergroup;
+				List<String> subgroupNames = new ArrayList<>();
+				for (Group subgroup : subgroups) {
+					subgroupNames.add(subgroup.getName());
+				}
+				cached = new GroupSnapshot(current, name, id, getGroupIds(), owner, password, isDisciplined, isValid,
+						players.toMap(), invites.toMap(), parent == null ? null : parent.getName(), subgroupNames);
+				// a change which started while building bumped the version, the snapshot may mix both states
+				if (changing.get() == 0 && version.get() == current) {
+					snapshot = cached;
+					return cached;
+				}
 			}
+			Thread.yield();
 		}
-		
-		// This returns list of ids w/ id holding largest # of players at top.
-		List<Integer> allIds = db.getAllIDs(name);
-		if (allIds != null && allIds.size() > 0) {
-			this.ids.addAll(allIds);
-			this.id = allIds.get(0); // default "root" id is the one with the players.
-		} else {
-			this.ids.add(id);
-			this.id = id; // otherwise just use what we're given
-		}
-		
-		// only get subgroups, supergroups will set themselves
-		for (Group subgroup : GroupManager.getSubGroups(name)) {
-			link(this, subgroup, false);
+	}
+	
+	/**
+	 * Applies several changes at once, a snapshot sees either none or all of them.
+	 * @param change the changes to apply
+	 */
+	public void change(Runnable change) {
+		beginChange();
+		try {
+			change.run();
+		} finally {
+			endChange();
 		}
 	}
 	
-	public long getActivityTimeStamp() {
-		return activityTimestamp;
+	/**
+	 * Holds back snapshots until the matching endChange(), call before every change to the state they hold.
+	 * Changes must not read snapshots of the group they change, that would wait forever.
+	 */
+	private void beginChange() {
+		changing.incrementAndGet();
+		version.incrementAndGet();
 	}
 	
-	public void updateActivityTimeStamp() {
-		this.activityTimestamp = System.currentTimeMillis();
-		db.updateTimestampAsync(name);
+	private void endChange() {
+		version.incrementAndGet();
+		changing.decrementAndGet();
 	}
 	
 	public void prepareForDeletion() {
-		unlink(supergroup, this);
-		for (Group subgroup : subgroups) {
-			unlink(this, subgroup);
+		prepareForDeletion(true);
+	}
+	
+	/**
+	 * Unlinks the group from its supergroup and subgroups.
+	 * @param savetodb false if the links are removed from the database along with the group itself
+	 */
+	public void prepareForDeletion(boolean savetodb) {
+		unlink(supergroup, this, savetodb);
+		for (Group subgroup : new ArrayList<>(subgroups)) {
+			unlink(this, subgroup, savetodb);
 		}
 	}
 	
@@ -96,7 +180,7 @@ public class Group {
 	 * @return Returns all the uuids.
 	 */
 	public List<UUID> getAllMembers() {
-		return Lists.newArrayList(players.keySet());
+		return players.members();
 	}
 	
 	/**
@@ -105,13 +189,10 @@ public class Group {
 	 * @return Returns all the UUIDS of the specific PlayerType.
 	 */
 	public List<UUID> getAllMembers(PlayerType type) {
-		List<UUID> uuids = Lists.newArrayList();;
-		for (Map.Entry<UUID, PlayerType> entry : players.entrySet()) {
-			if (entry.getValue() == type) {
-				uuids.add(entry.getKey());
-			}
+		if (type == null) {
+			return Lists.newArrayList();
 		}
-		return uuids;
+		return players.members(type);
 	}
 	
 	/**
@@ -122,17 +203,7 @@ public class Group {
 	 * @return list of all players whose name starts with the given string
 	 */
 	public List<UUID> getMembersByName(String prefix) {
-		List<UUID> uuids = Lists.newArrayList();
-		List<UUID> members = getAllMembers();
-		
-		prefix = prefix.toLowerCase();
-		for (UUID member : members) {
-			String name = NameAPI.getCurrentName(member);
-			if (name.toLowerCase().startsWith(prefix)) {
-				uuids.add(member);
-			}
-		}
-		return uuids;
+		return nameIndex().withPrefix(prefix == null ? "" : prefix);
 	}
 	
 	/**
@@ -143,17 +214,62 @@ public class Group {
 	 * @return list of uuids of all players in the group whose name is within the given range
 	 */
 	public List<UUID> getMembersInNameRange(String lowerLimit, String upperLimit) {
-		List<UUID> uuids = Lists.newArrayList();
-		List<UUID> members = getAllMembers();
-		
-		for (UUID member : members) {
-			String name = NameAPI.getCurrentName(member);
-			if (name.compareToIgnoreCase(lowerLimit) >= 0 
-					&& name.compareToIgnoreCase(upperLimit) <= 0) {
-				uuids.add(member);
+		return nameIndex().inRange(lowerLimit, upperLimit);
+	}
+	
+	private MemberNameIndex nameIndex() {
+		MemberNameIndex index = nameIndex;
+		while (index == null) {
+			long built = version.get();
+			index = new MemberNameIndex(NameAPI.getCurrentNames(getAllMembers()));
+			nameIndex = index;
+			if (version.get() != built) {
+				// members changed while building and may have missed the index, so build again
+				nameIndex = null;
+				index = null;
 			}
 		}
-		return uuids;
+		return index;
+	}
+	
+	/**
+	 * Keeps the name index in sync with a changed member list. Has to be called after endChange(), so a
+	 * change either reaches the index or makes a concurrent build start over.
+	 */
+	private void indexNames(Collection<UUID> added, Collection<UUID> removed) {
+		MemberNameIndex index = nameIndex;
+		if (index == null) {
+			return;
+		}
+		for (UUID uuid : removed) {
+			index.remove(uuid);
+		}
+		if (!added.isEmpty()) {
+			for (Map.Entry<UUID, String> member : NameAPI.getCurrentNames(added).entrySet()) {
+				index.put(member.getKey(), member.getValue());
+			}
+		}
+	}
+	
+	/**
+	 * @param uuid the player
+	 * @return true if the player is in the name index of this group, which is only there once looked up by name
+	 */
+	public boolean hasIndexedName(UUID uuid) {
+		MemberNameIndex index = nameIndex;
+		return index != null && index.contains(uuid);
+	}
+	
+	/**
+	 * Updates the name index after a member changed their name.
+	 * @param uuid the member
+	 * @param name the new name
+	 */
+	public void renameMember(UUID uuid, String name) {
+		MemberNameIndex index = nameIndex;
+		if (index != null && index.contains(uuid)) {
+			index.put(uuid, name);
+		}
 	}
 	
 	/**
@@ -161,18 +277,14 @@ public class Group {
 	 * @return List of UUIDs of the current players in this group
 	 */
 	public List<UUID> getCurrentMembers() {
-		return Lists.newArrayList(players.keySet());
+		return players.members();
 	}
 	
 	public List<UUID> getCurrentMembers(PlayerType rank) {
-		List<UUID> uuids = Lists.newArrayList();
-		
-		for (Map.Entry<UUID, PlayerType> entry : players.entrySet()) {
-			if (entry.getValue() == rank) {
-				uuids.add(entry.getKey());
-			}
+		if (rank == null) {
+			return Lists.newArrayList();
 		}
-		return uuids;
+		return players.members(rank);
 	}
 	
 	/**
@@ -190,6 +302,25 @@ public class Group {
 	public boolean hasSubGroup(Group group){
 		return subgroups.contains(group);
 	}
+	
+	/**
+	 * @return the memoized permissions players effectively have in this group, including inherited ones
+	 */
+	public EffectivePermissions getEffectivePermissions() {
+		return effectivePermissions;
+	}
+	
+	/**
+	 * Drops memoized effective permissions of this group and all groups below it, since those inherit from it.
+	 * Call this whenever a player's role, the blacklist, the permissions or the links of this group change.
+	 * @param uuid the player whose permissions changed, null for everyone
+	 */
+	public void invalidateEffectivePermissions(UUID uuid) {
+		effectivePermissions.invalidate(uuid);
+		for (Group subgroup : subgroups) {
+			subgroup.invalidateEffectivePermissions(uuid);
+		}
+	}
 		
 	/**
 	 * @return Returns the SubGroup for this group if there is one, null otherwise.
@@ -236,9 +367,15 @@ public class Group {
 	 * @param saveToDB - save the invitation to the DB. 
 	 */
 	public void addInvite(UUID uuid, PlayerType type, boolean saveToDB){
-		invites.put(uuid, type);
+		beginChange();
+		try {
+			invites.put(uuid, type);
+		} finally {
+			endChange();
+		}
 		if(saveToDB){
 			db.addGroupInvitation(uuid, name, type.name());
+			GroupManager.replicate(GroupDelta.ofRole(GroupDelta.Kind.INVITE_ADD, name, uuid, type));
 		}
 	}
 	
@@ -248,7 +385,7 @@ public class Group {
 	 * @return Returns the PlayerType or null.
 	 */
 	public PlayerType getInvite(UUID uuid) {
-		if (!invites.containsKey(uuid)) {
+		if (!invites.contains(uuid)) {
 			db.loadGroupInvitation(uuid, this);
 		}
 		return invites.get(uuid);
@@ -268,9 +405,15 @@ public class Group {
 	 * @param saveToDB - remove the invitation from the DB. 
 	 */
 	public void removeInvite(UUID uuid, boolean saveToDB){
-		invites.remove(uuid);
+		beginChange();
+		try {
+			invites.remove(uuid);
+		} finally {
+			endChange();
+		}
 		if(saveToDB){
 			db.removeGroupInvitation(uuid, name);
+			GroupManager.replicate(GroupDelta.ofPlayer(GroupDelta.Kind.INVITE_REMOVE, name, uuid));
 		}
 	}
 	/**
@@ -279,7 +422,7 @@ public class Group {
 	 * @return Returns true if the player is a member, false otherwise.
 	 */
 	public boolean isMember(UUID uuid) {
-		return players.containsKey(uuid);
+		return players.contains(uuid);
 	}
 
 	/**
@@ -289,20 +432,15 @@ public class Group {
 	 * @return Returns true if the player is a member of the specific playertype, otherwise false.
 	 */
 	public boolean isMember(UUID uuid, PlayerType type) {
-		if (players.containsKey(uuid))
-			return players.get(uuid).equals(type);
-		return false;
+		return type != null && players.get(uuid) == type;
 	}
 
 	public boolean isCurrentMember(UUID uuid) {
-		return players.containsKey(uuid);
+		return players.contains(uuid);
 	}
 	
 	public boolean isCurrentMember(UUID uuid, PlayerType rank) {
-		if (players.containsKey(uuid)) {
-			return players.get(uuid).equals(rank);
-		}
-		return false;
+		return rank != null && players.get(uuid) == rank;
 	}
 	
 	/**
@@ -340,13 +478,22 @@ public class Group {
 			return;
 		}
 		if (savetodb) {
-			// TODO: Make this atomic. UPDATE, don't remove and add! (Use INSERT ... UPDATE ON DUPLICATE / FAILURE semantic)
-			if (isMember(uuid, type)){
-				db.removeMember(uuid, name);
-			}
+			// upserts, so changing a role is a single statement
 			db.addMember(uuid, name, type);
+			GroupManager.replicate(GroupDelta.ofRole(GroupDelta.Kind.MEMBER_ADD, name, uuid, type));
+		}
+		beginChange();
+		try {
+			players.put(uuid, type);
+		} finally {
+			endChange();
+		}
+		indexNames(Collections.singletonList(uuid), Collections.emptyList());
+		invalidateEffectivePermissions(uuid);
+		MembershipIndex index = membershipIndex(savetodb);
+		if (index != null && uuid != null) {
+			index.setMember(uuid, name, type);
 		}
-		players.put(uuid, type);
 	}
 
 	/**
@@ -360,8 +507,120 @@ public class Group {
 	public void removeMember(UUID uuid, boolean savetodb) {
 		if (savetodb){
 			db.removeMember(uuid, name);
+			GroupManager.replicate(GroupDelta.ofPlayer(GroupDelta.Kind.MEMBER_REMOVE, name, uuid));
+		}
+		beginChange();
+		try {
+			players.remove(uuid);
+		} finally {
+			endChange();
+		}
+		indexNames(Collections.emptyList(), Collections.singletonList(uuid));
+		invalidateEffectivePermissions(uuid);
+		MembershipIndex index = membershipIndex(savetodb);
+		if (index != null) {
+			index.removeMember(uuid, name);
+		}
+	}
+	
+	/**
+	 * Adds many members at once, or changes their role if they already are members. The database is updated
+	 * with as few statements as possible.
+	 * @param members the PlayerType for each player, NOT_BLACKLISTED entries are ignored
+	 */
+	public void addMembers(Map<UUID, PlayerType> members) {
+		addMembers(members, true);
+	}
+	
+	public void addMembers(Map<UUID, PlayerType> members, boolean savetodb) {
+		Map<UUID, PlayerType> added = new HashMap<>();
+		for (Map.Entry<UUID, PlayerType> member : members.entrySet()) {
+			if (member.getKey() != null && member.getValue() != null && member.getValue() != PlayerType.NOT_BLACKLISTED) {
+				added.put(member.getKey(), member.getValue());
+			}
+		}
+		if (added.isEmpty()) {
+			return;
+		}
+		if (savetodb) {
+			db.addMembers(name, added);
+		}
+		beginChange();
+		try {
+			players.putAll(added);
+		} finally {
+			endChange();
+		}
+		indexNames(added.keySet(), Collections.emptyList());
+		MembershipIndex index = membershipIndex(savetodb);
+		for (Map.Entry<UUID, PlayerType> member : added.entrySet()) {
+			invalidateEffectivePermissions(member.getKey());
+			if (index != null) {
+				index.setMember(member.getKey(), name, member.getValue());
+			}
+			if (savetodb) {
+				GroupManager.replicate(GroupDelta.ofRole(GroupDelta.Kind.MEMBER_ADD, name, member.getKey(), member.getValue()));
+			}
+		}
+	}
+	
+	/**
+	 * Changes the role of many members at once. Players which aren't members are left out.
+	 * @param roles the new PlayerType for each member
+	 */
+	public void changeRoles(Map<UUID, PlayerType> roles) {
+		changeRoles(roles, true);
+	}
+	
+	public void changeRoles(Map<UUID, PlayerType> roles, boolean savetodb) {
+		Map<UUID, PlayerType> changed = new HashMap<>();
+		for (Map.Entry<UUID, PlayerType> role : roles.entrySet()) {
+			PlayerType current = players.get(role.getKey());
+			if (current != null && current != role.getValue()) {
+				changed.put(role.getKey(), role.getValue());
+			}
+		}
+		addMembers(changed, savetodb);
+	}
+	
+	/**
+	 * Removes many members at once, with as few statements as possible.
+	 * @param uuids the players to remove
+	 */
+	public void removeMembers(Collection<UUID> uuids) {
+		removeMembers(uuids, true);
+	}
+	
+	public void removeMembers(Collection<UUID> uuids, boolean savetodb) {
+		List<UUID> removed = new ArrayList<>();
+		for (UUID uuid : uuids) {
+			if (players.contains(uuid)) {
+				removed.add(uuid);
+			}
+		}
+		if (removed.isEmpty()) {
+			return;
+		}
+		if (savetodb) {
+			db.removeMembers(name, removed);
+		}
+		beginChange();
+		try {
+			players.removeAll(removed);
+		} finally {
+			endChange();
+		}
+		indexNames(Collections.emptyList(), removed);
+		MembershipIndex index = membershipIndex(savetodb);
+		for (UUID uuid : removed) {
+			invalidateEffectivePermissions(uuid);
+			if (index != null) {
+				index.removeMember(uuid, name);
+			}
+			if (savetodb) {
+				GroupManager.replicate(GroupDelta.ofPlayer(GroupDelta.Kind.MEMBER_REMOVE, name, uuid));
+			}
 		}
-		players.remove(uuid);
 	}
 	
 	public void removeAllMembers() {
@@ -372,7 +631,34 @@ public class Group {
 		if (savetodb) {
 			db.removeAllMembers(this.name);
 		}
-		players.clear();
+		MembershipIndex index = membershipIndex(savetodb);
+		for (UUID member : players.members()) {
+			if (index != null) {
+				index.removeMember(member, name);
+			}
+			if (savetodb) {
+				GroupManager.replicate(GroupDelta.ofPlayer(GroupDelta.Kind.MEMBER_REMOVE, name, member));
+			}
+		}
+		beginChange();
+		try {
+			players.clear();
+		} finally {
+			endChange();
+		}
+		nameIndex = null;
+		invalidateEffectivePermissions(null);
+	}
+	
+	/**
+	 * Groups which are still being loaded only mirror the database, so only changes written to the database
+	 * or made to the cached group go into the membership index.
+	 */
+	private MembershipIndex membershipIndex(boolean savetodb) {
+		if (!savetodb && GroupManager.getCachedGroup(name) != this) {
+			return null;
+		}
+		return GroupManager.getMembershipIndex();
 	}
 
 	/**
@@ -396,15 +682,24 @@ public class Group {
 		}
 		
 		if (subgroup.hasSuperGroup()) {
-			unlink(subgroup.supergroup, subgroup);
-		}
-		subgroup.supergroup = supergroup;
-		
-		if (!supergroup.hasSubGroup(subgroup)) {
-			supergroup.subgroups.add(subgroup);
+			// linking replaces the old link in the database
+			unlink(subgroup.supergroup, subgroup, false);
+		}
+		supergroup.beginChange();
+		subgroup.beginChange();
+		try {
+			subgroup.supergroup = supergroup;
+			if (!supergroup.hasSubGroup(subgroup)) {
+				supergroup.subgroups.add(subgroup);
+			}
+		} finally {
+			supergroup.endChange();
+			subgroup.endChange();
 		}
+		subgroup.invalidateEffectivePermissions(null);
 		if (saveToDb) {		
-			db.addSubGroup(supergroup.getName(), subgroup.getName());
+			db.linkGroups(supergroup.getName(), subgroup.getName());
+			GroupManager.replicate(GroupDelta.ofGroups(GroupDelta.Kind.LINK, supergroup.getName(), subgroup.getName()));
 		}
 		
 		return true;
@@ -424,16 +719,24 @@ public class Group {
 			return false;
 		}
 						
-		if (subgroup.hasSuperGroup() && subgroup.supergroup.equals(supergroup)) {
-			subgroup.supergroup = null;
+		supergroup.beginChange();
+		subgroup.beginChange();
+		try {
+			if (subgroup.hasSuperGroup() && subgroup.supergroup.equals(supergroup)) {
+				subgroup.supergroup = null;
+			}
+			if (supergroup.hasSubGroup(subgroup)) {
+				supergroup.subgroups.remove(subgroup);
+			}
+		} finally {
+			supergroup.endChange();
+			subgroup.endChange();
 		}
-		
-		if (supergroup.hasSubGroup(subgroup)) {
-			supergroup.subgroups.remove(subgroup);
-		}		
+		subgroup.invalidateEffectivePermissions(null);
 						
 		if (savetodb){
 			db.removeSubGroup(supergroup.getName(), subgroup.getName());
+			GroupManager.replicate(GroupDelta.ofGroups(GroupDelta.Kind.UNLINK, supergroup.getName(), subgroup.getName()));
 		}
 		
 		return true;
@@ -539,7 +842,12 @@ public class Group {
 		setPassword(password,true);
 	}
 	public void setPassword(String password, boolean savetodb) {
-		this.password = password;
+		beginChange();
+		try {
+			this.password = password;
+		} finally {
+			endChange();
+		}
 		if (savetodb){
 			db.updatePassword(name, password);
 		}
@@ -554,9 +862,47 @@ public class Group {
 	}
 	
 	public void setOwner(UUID uuid, boolean savetodb) {
-		this.owner = uuid;
+		UUID oldOwner = this.owner;
+		beginChange();
+		try {
+			this.owner = uuid;
+		} finally {
+			endChange();
+		}
 		if (savetodb){
 			db.setFounder(uuid, this);
+			GroupManager.replicate(GroupDelta.invalidate(name));
+		}
+		MembershipIndex index = membershipIndex(savetodb);
+		if (index != null) {
+			index.setFounder(name, oldOwner, uuid);
+		}
+	}
+	
+	/**
+	 * Makes a player the owner of the group, as its founder and as a member with the OWNER role.
+	 * @param uuid the new owner
+	 * @param savetodb write both changes to the database in one transaction
+	 */
+	public void transferOwnership(UUID uuid, boolean savetodb) {
+		if (savetodb) {
+			db.transferGroup(name, uuid);
+			GroupManager.replicate(GroupDelta.ofPlayer(GroupDelta.Kind.OWNER, name, uuid));
+		}
+		UUID oldOwner = this.owner;
+		beginChange();
+		try {
+			players.put(uuid, PlayerType.OWNER);
+			this.owner = uuid;
+		} finally {
+			endChange();
+		}
+		indexNames(Collections.singletonList(uuid), Collections.emptyList());
+		invalidateEffectivePermissions(uuid);
+		MembershipIndex index = membershipIndex(savetodb);
+		if (index != null) {
+			index.setMember(uuid, name, PlayerType.OWNER);
+			index.setFounder(name, oldOwner, uuid);
 		}
 	}
 	
@@ -565,20 +911,37 @@ public class Group {
 	}
 
 	public void setDisciplined(boolean value, boolean savetodb) {
-		this.isDisciplined = value;
+		beginChange();
+		try {
+			this.isDisciplined = value;
+		} finally {
+			endChange();
+		}
 		if (savetodb){
 			db.setDisciplined(this, value);
 		}
 	}
 
-	public void setValid(boolean valid) { this.isValid = valid; }
+	public void setValid(boolean valid) {
+		beginChange();
+		try {
+			this.isValid = valid;
+		} finally {
+			endChange();
+		}
+	}
 
 	// acts as replace
 	public void setGroupId(int id) {
-		this.ids.remove(this.id);
-		this.id = id;
-		if (!ids.contains(this.id)){
-			this.ids.add(this.id);
+		beginChange();
+		try {
+			this.ids.remove(this.id);
+			this.id = id;
+			if (!ids.contains(this.id)){
+				this.ids.add(this.id);
+			}
+		} finally {
+			endChange();
 		}
 	}
 
@@ -589,12 +952,17 @@ public class Group {
 	 * @param ids the list of IDs to replace
 	 */
 	public void setGroupIds(List<Integer> ids) {
-		this.ids.clear();
-		if (ids != null) {
-			this.ids.addAll(ids);
-		}
-		if (!ids.contains(this.id)){
-			this.ids.add(this.id);
+		beginChange();
+		try {
+			this.ids.clear();
+			if (ids != null) {
+				this.ids.addAll(ids);
+			}
+			if (!ids.contains(this.id)){
+				this.ids.add(this.id);
+			}
+		} finally {
+			endChange();
 		}
 	}
 	
@@ -603,6 +971,12 @@ public class Group {
 		if (!(obj instanceof Group))
 			return false;
 		Group g = (Group) obj;
-		return g.getName().equals(this.getName()); // If they have the same name they are equal.
+		// If they have the same name they are equal. Placeholders of groups being created have no name yet
+		return Objects.equals(g.getName(), this.getName());
+	}
+	
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(name);
 	}
 }
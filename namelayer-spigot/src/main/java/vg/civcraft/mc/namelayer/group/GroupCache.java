@@ -0,0 +1,365 @@
+package vg.civcraft.mc.namelayer.group;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import vg.civcraft.mc.namelayer.GroupManager;
+import vg.civcraft.mc.namelayer.NameLayerPlugin;
+
+/**
+ * Holds the loaded groups by name and by id. The cache is bounded by a maximum amount of groups and an
+ * estimated memory budget, once either is exceeded the least recently used groups are evicted. Recency is
+ * the later of the last cache lookup and the group's activity timestamp. Groups with online members or
+ * recent permission checks are never evicted.
+ *
+ * Linked groups reference each other, so a group tree is always evicted as a whole.
+ */
+public class GroupCache {
+
+	// lookups only move a group's recency forward once it is this many ms old, so hot groups aren't written to
+	// on every lookup
+	private static final long ACCESS_RESOLUTION = 1000;
+
+	// replaced as a whole by warm loading, so readers never see the maps of two different loads
+	private volatile Contents contents = new Contents(new ConcurrentHashMap<>(), new IntGroupMap(), new ConcurrentHashMap<>(), 0);
+
+	private final int maxEntries;
+	private final long memoryBudget;
+	private final long pinDuration;
+	private final Consumer<Group> onEvict;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicBoolean evictionScheduled = new AtomicBoolean();
+
+	/**
+	 * @param maxEntries maximum amount of cached groups, 0 or less for no limit
+	 * @param memoryBudget estimated bytes all cached groups may hold, 0 or less for no limit
+	 * @param pinDuration how long in ms a group stays pinned after a permission check
+	 * @param onEvict called on the main thread for every evicted group
+	 */
+	public GroupCache(int maxEntries, long memoryBudget, long pinDuration, Consumer<Group> onEvict) {
+		this.maxEntries = maxEntries;
+		this.memoryBudget = memoryBudget;
+		this.pinDuration = pinDuration;
+		this.onEvict = onEvict;
+	}
+
+	/**
+	 * Gets a cached group and counts the lookup as hit or miss.
+	 * @param name the group name, case insensitive
+	 * @return the cached group or null
+	 */
+	public Group get(String name) {
+		return touch(contents.groupsByName.get(name.toLowerCase()));
+	}
+
+	/**
+	 * Gets a cached group by any of its ids and counts the lookup as hit or miss.
+	 * @param id the group id
+	 * @return the cached group or null
+	 */
+	public Group get(int id) {
+		return touch(contents.groupsById.get(id));
+	}
+
+	/**
+	 * Gets a cached group without affecting statistics or recency.
+	 * @param name the group name, case insensitive
+	 * @return the cached group or null
+	 */
+	public Group peek(String name) {
+		return contents.groupsByName.get(name.toLowerCase());
+	}
+
+	private Group touch(Group group) {
+		if (group == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		long now = System.currentTimeMillis();
+		if (now - group.lastCacheAccess > ACCESS_RESOLUTION) {
+			group.lastCacheAccess = now;
+		}
+		return group;
+	}
+
+	/**
+	 * Caches a group under its name and all of its ids.
+	 * @param group the group to cache
+	 */
+	public void put(Group group) {
+		group.lastCacheAccess = System.currentTimeMillis();
+		String lower = group.getName().toLowerCase();
+		Entry entry = new Entry(toArray(group.getGroupIds()), group.estimateMemory());
+		Contents current = contents;
+		current.groupsByName.put(lower, group);
+		Entry old = current.entries.put(lower, entry);
+		current.memory.addAndGet(entry.memory - (old == null ? 0 : old.memory));
+		for (int id : entry.ids) {
+			current.groupsById.put(id, group);
+		}
+		if (current.isOverLimit() && evictionScheduled.compareAndSet(false, true)) {
+			// pin checks need the online players, so eviction always runs on the main thread
+			Bukkit.getScheduler().runTask(NameLayerPlugin.getInstance(), this::evict);
+		}
+	}
+
+	/**
+	 * Removes a group from the cache, under its name and all of its ids.
+	 * @param name the group name, case insensitive
+	 * @return the removed group or null if it wasn't cached
+	 */
+	public Group remove(String name) {
+		String lower = name.toLowerCase();
+		Contents current = contents;
+		Group group = current.groupsByName.remove(lower);
+		if (group == null) {
+			return null;
+		}
+		removeIds(current, lower, group);
+		return group;
+	}
+	
+	private static void removeIds(Contents current, String lower, Group group) {
+		Entry entry = current.entries.remove(lower);
+		if (entry != null) {
+			current.memory.addAndGet(-entry.memory);
+			for (int id : entry.ids) {
+				current.groupsById.remove(id, group);
+			}
+		}
+		// the group may have gained ids since it was cached
+		for (int id : group.getGroupIds()) {
+			current.groupsById.remove(id, group);
+		}
+	}
+
+	/**
+	 * Replaces the whole content of the cache at once, used when all groups were warm loaded.
+	 * @param byName groups by lower case name
+	 * @param byId groups by id
+	 */
+	public void replaceAll(Map<String, Group> byName, Map<Integer, Group> byId) {
+		long now = System.currentTimeMillis();
+		IntGroupMap ids = new IntGroupMap(byId.size());
+		Map<String, Entry> entries = new ConcurrentHashMap<>();
+		long memory = 0;
+		for (Map.Entry<String, Group> entry : byName.entrySet()) {
+			Group group = entry.getValue();
+			group.lastCacheAccess = now;
+			Entry cached = new Entry(toArray(group.getGroupIds()), group.estimateMemory());
+			entries.put(entry.getKey(), cached);
+			memory += cached.memory;
+		}
+		for (Map.Entry<Integer, Group> entry : byId.entrySet()) {
+			ids.put(entry.getKey(), entry.getValue());
+		}
+		contents = new Contents(new ConcurrentHashMap<>(byName), ids, entries, memory);
+	}
+
+	/**
+	 * Pins a group for a while because permissions were checked against it.
+	 * @param group the group permissions were checked for
+	 */
+	public void recordAccessCheck(Group group) {
+		group.lastAccessCheck = System.currentTimeMillis();
+	}
+
+	/**
+	 * Evicts least recently used group trees until the cache is back below 90% of its limits, so
+	 * eviction doesn't immediately run again. Has to be called on the main thread.
+	 */
+	public void evict() {
+		evictionScheduled.set(false);
+		Contents current = contents;
+		if (!current.isOverLimit()) {
+			return;
+		}
+		int size = current.groupsByName.size();
+		long targetEntries = maxEntries <= 0 ? Long.MAX_VALUE : maxEntries * 9L / 10;
+		long targetMemory = memoryBudget <= 0 ? Long.MAX_VALUE : memoryBudget * 9L / 10;
+
+		List<CachedTree> trees = new ArrayList<>();
+		for (Group group : current.groupsByName.values()) {
+			Group supergroup = group.getSuperGroup();
+			if (supergroup == null || peek(supergroup.getName()) != supergroup) {
+				trees.add(new CachedTree(group));
+			}
+		}
+		trees.sort((a, b) -> Long.compare(a.lastUsed, b.lastUsed));
+
+		long now = System.currentTimeMillis();
+		Set<String> memberGroups = null;
+		Set<UUID> untracked = null;
+		int evicted = 0;
+		for (CachedTree tree : trees) {
+			if (size <= targetEntries && current.memory.get() <= targetMemory) {
+				break;
+			}
+			if (memberGroups == null) {
+				memberGroups = new HashSet<>();
+				untracked = new HashSet<>();
+				collectOnlineMemberships(memberGroups, untracked);
+			}
+			if (tree.isPinned(memberGroups, untracked, now - pinDuration)) {
+				continue;
+			}
+			for (Group group : tree.groups) {
+				String lower = group.getName().toLowerCase();
+				if (current.groupsByName.remove(lower, group)) {
+					removeIds(current, lower, group);
+					onEvict.accept(group);
+					size--;
+					evicted++;
+				}
+			}
+		}
+		if (evicted == 0) {
+			return;
+		}
+		evictions.addAndGet(evicted);
+		NameLayerPlugin.getInstance().getLogger().log(Level.INFO,
+				"Evicted {0} groups from cache, {1} remaining. Hits: {2}, misses: {3}, evictions: {4}",
+				new Object[] {evicted, size, hits.sum(), misses.sum(), evictions.get()});
+	}
+
+	/**
+	 * Collects the groups online players are members of from the membership index, so pinning is a set lookup
+	 * per group instead of a member check per group and player.
+	 * @param memberGroups filled with the lower case names of those groups
+	 * @param untracked filled with online players the index can't answer for yet, they are checked one by one
+	 */
+	private static void collectOnlineMemberships(Set<String> memberGroups, Set<UUID> untracked) {
+		MembershipIndex index = GroupManager.getMembershipIndex();
+		for (Player p : Bukkit.getOnlinePlayers()) {
+			List<String> groups = index == null ? null : index.getGroupNames(p.getUniqueId());
+			if (groups == null) {
+				untracked.add(p.getUniqueId());
+				continue;
+			}
+			for (String group : groups) {
+				memberGroups.add(group.toLowerCase());
+			}
+		}
+	}
+
+	private static int[] toArray(List<Integer> ids) {
+		int[] result = new int[ids.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = ids.get(i);
+		}
+		return result;
+	}
+
+	public int size() {
+		return contents.groupsByName.size();
+	}
+
+	/**
+	 * @return all cached groups, a live view which may change while iterating
+	 */
+	public Collection<Group> getGroups() {
+		return Collections.unmodifiableCollection(contents.groupsByName.values());
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * The maps of the cache, published together so a lookup by id and one by name always see the same load.
+	 */
+	private final class Contents {
+		private final Map<String, Group> groupsByName;
+		private final IntGroupMap groupsById;
+		private final Map<String, Entry> entries;
+		// sum of the memory estimates in entries, kept up to date on every change so eviction never sums it up
+		private final AtomicLong memory;
+
+		Contents(Map<String, Group> groupsByName, IntGroupMap groupsById, Map<String, Entry> entries, long memory) {
+			this.groupsByName = groupsByName;
+			this.groupsById = groupsById;
+			this.entries = entries;
+			this.memory = new AtomicLong(memory);
+		}
+
+		boolean isOverLimit() {
+			return (maxEntries > 0 && groupsByName.size() > maxEntries)
+					|| (memoryBudget > 0 && memory.get() > memoryBudget);
+		}
+	}
+
+	/**
+	 * What a group was cached with: the ids it was put under, so removing a group never has to scan groupsById,
+	 * and its memory estimate at that time, so removing it takes back exactly what was added.
+	 */
+	private static final class Entry {
+		private final int[] ids;
+		private final long memory;
+
+		Entry(int[] ids, long memory) {
+			this.ids = ids;
+			this.memory = memory;
+		}
+	}
+
+	/**
+	 * A cached group together with all of its cached subgroups, evicted as one unit.
+	 */
+	private class CachedTree {
+		private final List<Group> groups = new ArrayList<>();
+		private long lastUsed;
+
+		CachedTree(Group root) {
+			collect(root);
+		}
+
+		private void collect(Group group) {
+			groups.add(group);
+			lastUsed = Math.max(lastUsed, Math.max(group.lastCacheAccess, group.getActivityTimeStamp()));
+			for (Group subgroup : group.getSubgroups()) {
+				if (peek(subgroup.getName()) == subgroup) {
+					collect(subgroup);
+				}
+			}
+		}
+
+		boolean isPinned(Set<String> memberGroups, Set<UUID> untracked, long pinnedSince) {
+			for (Group group : groups) {
+				if (group.lastAccessCheck > pinnedSince || memberGroups.contains(group.getName().toLowerCase())) {
+					return true;
+				}
+				for (UUID uuid : untracked) {
+					if (group.isMember(uuid)) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package vg.civcraft.mc.namelayer.group;
+
+import vg.civcraft.mc.namelayer.GroupManager;
+
+/**
+ * A lasting reference to a group by name. Group objects are thrown away whenever a group is invalidated or
+ * dropped from the cache, a handle instead always leads to the current one, so it can be kept around instead
+ * of looking the group up by name again and again. Get one from {@link GroupManager#getHandle(String)}.
+ */
+public final class GroupHandle {
+
+	private final String name;
+	private volatile Group group;
+
+	public GroupHandle(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the current group object, loading it if it isn't cached anymore. Like
+	 * {@link GroupManager#getGroup(String)} this may hit the database.
+	 * @return the group, null if it doesn't exist (anymore)
+	 */
+	public Group get() {
+		Group current = group;
+		if (current == null || !current.isValid()) {
+			current = GroupManager.getGroup(name);
+			group = current;
+		}
+		return current;
+	}
+
+	/**
+	 * Gets the current group object only if it is cached, never touches the database.
+	 * @return the group or null
+	 */
+	public Group getIfCached() {
+		Group current = group;
+		if (current == null || !current.isValid()) {
+			current = GroupManager.getCachedGroup(name);
+			if (current != null) {
+				group = current;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * @return the current state of the group, null if it doesn't exist (anymore)
+	 */
+	public GroupSnapshot snapshot() {
+		Group current = get();
+		return current == null ? null : current.getSnapshot();
+	}
+}
@@ -0,0 +1,144 @@
+package vg.civcraft.mc.namelayer.group;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import vg.civcraft.mc.namelayer.GroupManager.PlayerType;
+
+/**
+ * The state of a group at one point in time. Snapshots never change, so they can be read from any thread
+ * without locking and everything read from one snapshot is consistent with the rest of it. Changes to the
+ * group are not visible in a snapshot taken before them, get a new one from {@link Group#getSnapshot()} or
+ * {@link GroupHandle#snapshot()} instead of keeping one around.
+ */
+public final class GroupSnapshot {
+
+	private final long version;
+	private final String name;
+	private final int id;
+	private final List<Integer> ids;
+	private final UUID owner;
+	private final String password;
+	private final boolean disciplined;
+	private final boolean valid;
+	private final Map<UUID, PlayerType> members;
+	private final Map<UUID, PlayerType> invites;
+	private final String supergroup;
+	private final List<String> subgroups;
+
+	GroupSnapshot(long version, String name, int id, List<Integer> ids, UUID owner, String password, boolean disciplined,
+			boolean valid, Map<UUID, PlayerType> members, Map<UUID, PlayerType> invites, String supergroup,
+			List<String> subgroups) {
+		this.version = version;
+		this.name = name;
+		this.id = id;
+		this.ids = Collections.unmodifiableList(ids);
+		this.owner = owner;
+		this.password = password;
+		this.disciplined = disciplined;
+		this.valid = valid;
+		this.members = Collections.unmodifiableMap(members);
+		this.invites = Collections.unmodifiableMap(invites);
+		this.supergroup = supergroup;
+		this.subgroups = Collections.unmodifiableList(subgroups);
+	}
+
+	/**
+	 * @return how many changes the group had seen when this snapshot was taken
+	 */
+	long getVersion() {
+		return version;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getGroupId() {
+		return id;
+	}
+
+	public List<Integer> getGroupIds() {
+		return ids;
+	}
+
+	public UUID getOwner() {
+		return owner;
+	}
+
+	public boolean isOwner(UUID uuid) {
+		return owner != null && owner.equals(uuid);
+	}
+
+	public String getPassword() {
+		return password;
+	}
+
+	public boolean isDisciplined() {
+		return disciplined;
+	}
+
+	/**
+	 * @return false if the group was deleted or dropped from the cache before this snapshot was taken
+	 */
+	public boolean isValid() {
+		return valid;
+	}
+
+	/**
+	 * @return all members and their PlayerType, unmodifiable
+	 */
+	public Map<UUID, PlayerType> getMembers() {
+		return members;
+	}
+
+	/**
+	 * @param type the PlayerType wanted
+	 * @return the members with exactly that PlayerType
+	 */
+	public List<UUID> getMembers(PlayerType type) {
+		List<UUID> result = new ArrayList<>();
+		for (Map.Entry<UUID, PlayerType> member : members.entrySet()) {
+			if (member.getValue() == type) {
+				result.add(member.getKey());
+			}
+		}
+		return result;
+	}
+
+	public boolean isMember(UUID uuid) {
+		return members.containsKey(uuid);
+	}
+
+	/**
+	 * @param uuid the player
+	 * @return the role of the player, null if they aren't a member. Unlike {@link Group#getPlayerType(UUID)}
+	 *         this never looks at the blacklist
+	 */
+	public PlayerType getRank(UUID uuid) {
+		return members.get(uuid);
+	}
+
+	/**
+	 * @return pending invites and the PlayerType they are for, only the ones which were loaded, unmodifiable
+	 */
+	public Map<UUID, PlayerType> getInvites() {
+		return invites;
+	}
+
+	/**
+	 * @return name of the supergroup, null if there is none
+	 */
+	public String getSuperGroup() {
+		return supergroup;
+	}
+
+	/**
+	 * @return names of the direct subgroups, unmodifiable
+	 */
+	public List<String> getSubgroups() {
+		return subgroups;
+	}
+}
@@ -0,0 +1,167 @@
+package vg.civcraft.mc.namelayer.group;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Maps group ids to groups without boxing the ids. Open addressing with linear probing, removals shift
+ * following entries back so no tombstones are needed. Reads are optimistic and never allocate, writes
+ * take a lock.
+ */
+class IntGroupMap {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private final StampedLock lock = new StampedLock();
+	private volatile Table table;
+	private int size;
+
+	IntGroupMap() {
+		this(MIN_CAPACITY);
+	}
+
+	IntGroupMap(int expectedSize) {
+		table = new Table(capacityFor(expectedSize));
+	}
+
+	Group get(int id) {
+		long stamp = lock.tryOptimisticRead();
+		Group group = table.find(id);
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				group = table.find(id);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return group;
+	}
+
+	void put(int id, Group group) {
+		long stamp = lock.writeLock();
+		try {
+			Table current = table;
+			int slot = current.slotOf(id);
+			if (current.values[slot] == null) {
+				if ((size + 1) * 2 > current.keys.length) {
+					current = resize(current.keys.length * 2);
+					slot = current.slotOf(id);
+				}
+				size++;
+			}
+			current.keys[slot] = id;
+			current.values[slot] = group;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Removes the mapping for an id, but only if it still points to the given group.
+	 * @return true if the mapping was removed
+	 */
+	boolean remove(int id, Group expected) {
+		long stamp = lock.writeLock();
+		try {
+			Table current = table;
+			int slot = current.slotOf(id);
+			if (current.values[slot] == null || current.values[slot] != expected) {
+				return false;
+			}
+			current.removeSlot(slot);
+			size--;
+			return true;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	private Table resize(int capacity) {
+		Table old = table;
+		Table resized = new Table(capacity);
+		for (int i = 0; i < old.keys.length; i++) {
+			if (old.values[i] != null) {
+				int slot = resized.slotOf(old.keys[i]);
+				resized.keys[slot] = old.keys[i];
+				resized.values[slot] = old.values[i];
+			}
+		}
+		table = resized;
+		return resized;
+	}
+
+	private static int capacityFor(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private static final class Table {
+		private final int[] keys;
+		private final Group[] values;
+		private final int mask;
+
+		Table(int capacity) {
+			keys = new int[capacity];
+			values = new Group[capacity];
+			mask = capacity - 1;
+		}
+
+		private int home(int id) {
+			return (id * 0x9E3779B9) >>> 7 & mask;
+		}
+
+		/**
+		 * Only reads, safe to call while a writer is busy as long as the caller validates afterwards.
+		 * The probe is bounded by the table size, so a concurrent write can't make it loop forever.
+		 */
+		Group find(int id) {
+			int slot = home(id);
+			for (int i = 0; i <= mask; i++) {
+				Group group = values[slot];
+				if (group == null) {
+					return null;
+				}
+				if (keys[slot] == id) {
+					return group;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return null;
+		}
+
+		/**
+		 * @return the slot holding the id or the empty slot it would go into
+		 */
+		int slotOf(int id) {
+			int slot = home(id);
+			while (values[slot] != null && keys[slot] != id) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		void removeSlot(int slot) {
+			values[slot] = null;
+			// shift back entries which probed past the freed slot
+			int next = (slot + 1) & mask;
+			while (values[next] != null) {
+				int home = home(keys[next]);
+				boolean movable = slot <= next ? (home <= slot || home > next) : (home <= slot && home > next);
+				if (movable) {
+					keys[slot] = keys[next];
+					values[slot] = values[next];
+					values[next] = null;
+					slot = next;
+				}
+				next = (next + 1) & mask;
+			}
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package vg.civcraft.mc.namelayer.group;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The members of a single group sorted by lower case name, so prefix and range lookups don't have to look
+ * at every member. Lookups never lock, writes are serialized. Names are unique case insensitively, should
+ * two members still end up with the same one only the later is found by it.
+ */
+class MemberNameIndex {
+
+	private final ConcurrentSkipListMap<String, UUID> byName = new ConcurrentSkipListMap<>();
+	// lower case name each member is indexed under, to find it again on renames and removals
+	private final Map<UUID, String> names = new ConcurrentHashMap<>();
+
+	/**
+	 * @param members current name by uuid of all members
+	 */
+	MemberNameIndex(Map<UUID, String> members) {
+		for (Map.Entry<UUID, String> member : members.entrySet()) {
+			put(member.getKey(), member.getValue());
+		}
+	}
+
+	/**
+	 * Indexes a member under their current name, replacing their old name.
+	 * @param uuid the member
+	 * @param name the current name, null only removes the member
+	 */
+	synchronized void put(UUID uuid, String name) {
+		remove(uuid);
+		if (uuid == null || name == null) {
+			return;
+		}
+		String lower = name.toLowerCase();
+		names.put(uuid, lower);
+		byName.put(lower, uuid);
+	}
+
+	synchronized void remove(UUID uuid) {
+		if (uuid == null) {
+			return;
+		}
+		String lower = names.remove(uuid);
+		if (lower != null) {
+			byName.remove(lower, uuid);
+		}
+	}
+
+	boolean contains(UUID uuid) {
+		return uuid != null && names.containsKey(uuid);
+	}
+
+	int size() {
+		return names.size();
+	}
+
+	/**
+	 * @param prefix start of the name, case insensitive
+	 * @return members whose name starts with the prefix, sorted by name
+	 */
+	List<UUID> withPrefix(String prefix) {
+		String lower = prefix.toLowerCase();
+		List<UUID> result = new ArrayList<>();
+		for (Map.Entry<String, UUID> member : byName.tailMap(lower, true).entrySet()) {
+			if (!member.getKey().startsWith(lower)) {
+				break;
+			}
+			result.add(member.getValue());
+		}
+		return result;
+	}
+
+	/**
+	 * @param lowerLimit lexicographically lowest acceptable name, case insensitive
+	 * @param upperLimit lexicographically highest acceptable name, case insensitive
+	 * @return members whose name is within the limits, sorted by name
+	 */
+	List<UUID> inRange(String lowerLimit, String upperLimit) {
+		String lower = lowerLimit.toLowerCase();
+		String upper = upperLimit.toLowerCase();
+		if (lower.compareTo(upper) > 0) {
+			return new ArrayList<>();
+		}
+		NavigableMap<String, UUID> range = byName.subMap(lower, true, upper, true);
+		return new ArrayList<>(range.values());
+	}
+}
@@ -0,0 +1,284 @@
+package vg.civcraft.mc.namelayer.group;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+import vg.civcraft.mc.namelayer.GroupManager.PlayerType;
+
+/**
+ * Maps member UUIDs to their PlayerType for a single group. UUIDs are stored as two longs and the type
+ * as a byte in open addressed arrays, so a member costs 23 to 45 bytes instead of a map node plus a UUID
+ * object. Lookups are optimistic reads and don't allocate, writes take a lock.
+ */
+class MemberTable {
+
+	private static final int MIN_CAPACITY = 8;
+	private static final PlayerType[] TYPES = PlayerType.values();
+
+	private final StampedLock lock = new StampedLock();
+	private volatile Table table = new Table(MIN_CAPACITY);
+	private int size;
+
+	PlayerType get(UUID uuid) {
+		if (uuid == null) {
+			return null;
+		}
+		long msb = uuid.getMostSignificantBits();
+		long lsb = uuid.getLeastSignificantBits();
+		long stamp = lock.tryOptimisticRead();
+		int code = table.find(msb, lsb);
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				code = table.find(msb, lsb);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return code == 0 ? null : TYPES[code - 1];
+	}
+
+	boolean contains(UUID uuid) {
+		return get(uuid) != null;
+	}
+
+	void put(UUID uuid, PlayerType type) {
+		if (uuid == null || type == null) {
+			return;
+		}
+		long stamp = lock.writeLock();
+		try {
+			putLocked(uuid, type);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Puts many members at once, under a single lock.
+	 */
+	void putAll(Map<UUID, PlayerType> members) {
+		long stamp = lock.writeLock();
+		try {
+			for (Map.Entry<UUID, PlayerType> member : members.entrySet()) {
+				if (member.getKey() != null && member.getValue() != null) {
+					putLocked(member.getKey(), member.getValue());
+				}
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	private void putLocked(UUID uuid, PlayerType type) {
+		long msb = uuid.getMostSignificantBits();
+		long lsb = uuid.getLeastSignificantBits();
+		Table current = table;
+		int slot = current.slotOf(msb, lsb);
+		if (current.roles[slot] == 0) {
+			// keep the load factor at or below 3/4, linear probes stay short
+			if ((size + 1) * 4 > current.roles.length * 3) {
+				current = resize(current.roles.length * 2);
+				slot = current.slotOf(msb, lsb);
+			}
+			size++;
+			current.msbs[slot] = msb;
+			current.lsbs[slot] = lsb;
+		}
+		current.roles[slot] = (byte) (type.ordinal() + 1);
+	}
+
+	void remove(UUID uuid) {
+		if (uuid == null) {
+			return;
+		}
+		long stamp = lock.writeLock();
+		try {
+			removeLocked(uuid);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Removes many members at once, under a single lock.
+	 */
+	void removeAll(Collection<UUID> uuids) {
+		long stamp = lock.writeLock();
+		try {
+			for (UUID uuid : uuids) {
+				if (uuid != null) {
+					removeLocked(uuid);
+				}
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	private void removeLocked(UUID uuid) {
+		Table current = table;
+		int slot = current.slotOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+		if (current.roles[slot] != 0) {
+			current.removeSlot(slot);
+			size--;
+		}
+	}
+
+	void clear() {
+		long stamp = lock.writeLock();
+		try {
+			table = new Table(MIN_CAPACITY);
+			size = 0;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return all members, in no particular order
+	 */
+	List<UUID> members() {
+		return members(null);
+	}
+
+	/**
+	 * @param type only members with this type, null for all
+	 * @return the matching members, in no particular order
+	 */
+	List<UUID> members(PlayerType type) {
+		byte wanted = type == null ? 0 : (byte) (type.ordinal() + 1);
+		long stamp = lock.readLock();
+		try {
+			Table current = table;
+			List<UUID> result = new ArrayList<>(type == null ? size : 16);
+			for (int i = 0; i < current.roles.length; i++) {
+				byte role = current.roles[i];
+				if (role != 0 && (wanted == 0 || role == wanted)) {
+					result.add(new UUID(current.msbs[i], current.lsbs[i]));
+				}
+			}
+			return result;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @return a copy of all members and their types
+	 */
+	Map<UUID, PlayerType> toMap() {
+		long stamp = lock.readLock();
+		try {
+			Table current = table;
+			Map<UUID, PlayerType> result = new HashMap<>(size * 4 / 3 + 1);
+			for (int i = 0; i < current.roles.length; i++) {
+				byte role = current.roles[i];
+				if (role != 0) {
+					result.put(new UUID(current.msbs[i], current.lsbs[i]), TYPES[role - 1]);
+				}
+			}
+			return result;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @return rough heap size of this table in bytes
+	 */
+	long estimateMemory() {
+		return 64L + table.roles.length * 17L;
+	}
+
+	private Table resize(int capacity) {
+		Table old = table;
+		Table resized = new Table(capacity);
+		for (int i = 0; i < old.roles.length; i++) {
+			if (old.roles[i] != 0) {
+				int slot = resized.slotOf(old.msbs[i], old.lsbs[i]);
+				resized.msbs[slot] = old.msbs[i];
+				resized.lsbs[slot] = old.lsbs[i];
+				resized.roles[slot] = old.roles[i];
+			}
+		}
+		table = resized;
+		return resized;
+	}
+
+	private static final class Table {
+		private final long[] msbs;
+		private final long[] lsbs;
+		// PlayerType ordinal + 1, 0 marks an empty slot
+		private final byte[] roles;
+		private final int mask;
+
+		Table(int capacity) {
+			msbs = new long[capacity];
+			lsbs = new long[capacity];
+			roles = new byte[capacity];
+			mask = capacity - 1;
+		}
+
+		private int home(long msb, long lsb) {
+			long hash = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+			return (int) (hash >>> 32) & mask;
+		}
+
+		/**
+		 * Only reads, safe to call while a writer is busy as long as the caller validates afterwards.
+		 * @return the role code or 0 if not a member
+		 */
+		int find(long msb, long lsb) {
+			int slot = home(msb, lsb);
+			for (int i = 0; i <= mask; i++) {
+				byte role = roles[slot];
+				if (role == 0) {
+					return 0;
+				}
+				if (msbs[slot] == msb && lsbs[slot] == lsb) {
+					return role;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return 0;
+		}
+
+		/**
+		 * @return the slot holding the uuid or the empty slot it would go into
+		 */
+		int slotOf(long msb, long lsb) {
+			int slot = home(msb, lsb);
+			while (roles[slot] != 0 && (msbs[slot] != msb || lsbs[slot] != lsb)) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		void removeSlot(int slot) {
+			roles[slot] = 0;
+			// shift back entries which probed past the freed slot
+			int next = (slot + 1) & mask;
+			while (roles[next] != 0) {
+				int home = home(msbs[next], lsbs[next]);
+				boolean movable = slot <= next ? (home <= slot || home > next) : (home <= slot && home > next);
+				if (movable) {
+					msbs[slot] = msbs[next];
+					lsbs[slot] = lsbs[next];
+					roles[slot] = roles[next];
+					roles[next] = 0;
+					slot = next;
+				}
+				next = (next + 1) & mask;
+			}
+		}
+	}
+}
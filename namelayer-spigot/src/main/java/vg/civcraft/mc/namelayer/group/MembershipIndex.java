@@ -0,0 +1,208 @@
+package vg.civcraft.mc.namelayer.group;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import vg.civcraft.mc.namelayer.GroupManager.PlayerType;
+import vg.civcraft.mc.namelayer.database.GroupManagerDao;
+import vg.civcraft.mc.namelayer.misc.Futures;
+
+/**
+ * Reverse index from players to the groups they are a member of and the groups they founded, so listing
+ * or counting a player's groups doesn't need the database. A player is filled from the database once,
+ * usually on login, and kept up to date by group mutations from then on. Players which were never filled
+ * aren't tracked at all, lookups for them return null and the caller has to ask the database instead.
+ */
+public class MembershipIndex {
+
+	private final Map<UUID, Memberships> byPlayer = new ConcurrentHashMap<>();
+	private final GroupManagerDao db;
+
+	public MembershipIndex(GroupManagerDao db) {
+		this.db = db;
+	}
+
+	/**
+	 * Starts filling the index for a player off the main thread. Does nothing if the player is already tracked.
+	 * @param uuid the player
+	 */
+	public void load(UUID uuid) {
+		Memberships entry = new Memberships();
+		if (byPlayer.putIfAbsent(uuid, entry) == null) {
+			Futures.async().execute(() -> fill(uuid, entry));
+		}
+	}
+
+	private void fill(UUID uuid, Memberships entry) {
+		Map<String, PlayerType> memberships = db.getMemberships(uuid);
+		List<String> founded = db.getFoundedGroupNames(uuid);
+		if (memberships == null || founded == null) {
+			// better to ask the database every time than to answer wrong from memory
+			byPlayer.remove(uuid, entry);
+			return;
+		}
+		entry.fill(memberships, founded);
+	}
+
+	/**
+	 * Refills a player from the database if they are tracked, for changes which weren't applied one by one.
+	 * @param uuid the player
+	 */
+	public void reload(UUID uuid) {
+		if (byPlayer.remove(uuid) != null) {
+			load(uuid);
+		}
+	}
+
+	/**
+	 * Stops tracking a player, usually because they logged off.
+	 * @param uuid the player
+	 */
+	public void forget(UUID uuid) {
+		byPlayer.remove(uuid);
+	}
+
+	/**
+	 * @param uuid the player
+	 * @return names of all groups the player is a member of or null if the player isn't tracked (yet)
+	 */
+	public List<String> getGroupNames(UUID uuid) {
+		Memberships entry = byPlayer.get(uuid);
+		return entry == null ? null : entry.groupNames();
+	}
+
+	/**
+	 * @param uuid the player
+	 * @return amount of groups the player founded or -1 if the player isn't tracked (yet)
+	 */
+	public int countFounded(UUID uuid) {
+		Memberships entry = byPlayer.get(uuid);
+		return entry == null ? -1 : entry.countFounded();
+	}
+
+	/**
+	 * @param uuid the player
+	 * @param group the group name, case insensitive
+	 * @return the player's role in the group, null if they aren't a member or aren't tracked (yet)
+	 */
+	public PlayerType getRole(UUID uuid, String group) {
+		Memberships entry = byPlayer.get(uuid);
+		return entry == null ? null : entry.role(group.toLowerCase());
+	}
+
+	public void setMember(UUID uuid, String group, PlayerType role) {
+		update(uuid, entry -> entry.groups.put(group.toLowerCase(), new Membership(group, role)));
+	}
+
+	public void removeMember(UUID uuid, String group) {
+		update(uuid, entry -> entry.groups.remove(group.toLowerCase()));
+	}
+
+	public void setFounder(String group, UUID oldFounder, UUID newFounder) {
+		String lower = group.toLowerCase();
+		if (oldFounder != null) {
+			update(oldFounder, entry -> entry.founded.remove(lower));
+		}
+		if (newFounder != null) {
+			update(newFounder, entry -> entry.founded.add(lower));
+		}
+	}
+
+	/**
+	 * Removes a deleted group from everyone involved with it.
+	 * @param group the deleted group's name
+	 * @param players members and founder of the group
+	 */
+	public void removeGroup(String group, Collection<UUID> players) {
+		String lower = group.toLowerCase();
+		for (UUID uuid : players) {
+			update(uuid, entry -> {
+				entry.groups.remove(lower);
+				entry.founded.remove(lower);
+			});
+		}
+	}
+
+	private void update(UUID uuid, Consumer<Memberships> change) {
+		if (uuid == null) {
+			return;
+		}
+		Memberships entry = byPlayer.get(uuid);
+		if (entry != null) {
+			entry.apply(change);
+		}
+	}
+
+	/**
+	 * @return amount of tracked players
+	 */
+	public int size() {
+		return byPlayer.size();
+	}
+
+	private static final class Membership {
+		private final String group;
+		private final PlayerType role;
+
+		Membership(String group, PlayerType role) {
+			this.group = group;
+			this.role = role;
+		}
+	}
+
+	private static final class Memberships {
+		// by lower case group name
+		private final Map<String, Membership> groups = new HashMap<>();
+		private final Set<String> founded = new HashSet<>();
+		// changes made while the database lookup was running, replayed on top of its result. Null once filled
+		private List<Consumer<Memberships>> pending = new ArrayList<>();
+
+		synchronized void fill(Map<String, PlayerType> memberships, List<String> foundedGroups) {
+			for (Map.Entry<String, PlayerType> membership : memberships.entrySet()) {
+				groups.put(membership.getKey().toLowerCase(), new Membership(membership.getKey(), membership.getValue()));
+			}
+			for (String group : foundedGroups) {
+				founded.add(group.toLowerCase());
+			}
+			for (Consumer<Memberships> change : pending) {
+				change.accept(this);
+			}
+			pending = null;
+		}
+
+		synchronized void apply(Consumer<Memberships> change) {
+			if (pending != null) {
+				pending.add(change);
+			} else {
+				change.accept(this);
+			}
+		}
+
+		synchronized List<String> groupNames() {
+			if (pending != null) {
+				return null;
+			}
+			List<String> names = new ArrayList<>(groups.size());
+			for (Membership membership : groups.values()) {
+				names.add(membership.group);
+			}
+			return names;
+		}
+
+		synchronized PlayerType role(String lower) {
+			Membership membership = pending != null ? null : groups.get(lower);
+			return membership == null ? null : membership.role;
+		}
+
+		synchronized int countFounded() {
+			return pending != null ? -1 : founded.size();
+		}
+	}
+}
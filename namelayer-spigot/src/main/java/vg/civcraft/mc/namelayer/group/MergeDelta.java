@@ -0,0 +1,134 @@
+package vg.civcraft.mc.namelayer.group;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import vg.civcraft.mc.namelayer.GroupManager.PlayerType;
+import vg.civcraft.mc.namelayer.permission.GroupPermission;
+import vg.civcraft.mc.namelayer.permission.PermissionType;
+
+/**
+ * What merging one group into another changes about the remaining group. Computed once from the cached
+ * groups, then written to the database and applied to the cached groups, so the two end up the same
+ * without reloading anything. Members of both groups keep their role in the remaining group.
+ */
+public class MergeDelta {
+
+	private final Group into;
+	private final Group merged;
+	private final Map<UUID, PlayerType> newMembers;
+	private final List<Group> subgroups;
+	private final Map<PlayerType, List<PermissionType>> newPermissions;
+	private final List<Integer> ids;
+	private final Set<UUID> mergedMembers;
+
+	private MergeDelta(Group into, Group merged, Map<UUID, PlayerType> newMembers, List<Group> subgroups,
+			Map<PlayerType, List<PermissionType>> newPermissions, List<Integer> ids, Set<UUID> mergedMembers) {
+		this.into = into;
+		this.merged = merged;
+		this.newMembers = newMembers;
+		this.subgroups = subgroups;
+		this.newPermissions = newPermissions;
+		this.ids = ids;
+		this.mergedMembers = mergedMembers;
+	}
+
+	/**
+	 * @param into the group which remains
+	 * @param merged the group merged into it
+	 * @param intoPerms permissions of the remaining group
+	 * @param mergedPerms permissions of the merged group
+	 * @return the changes merging makes to the remaining group
+	 */
+	public static MergeDelta compute(Group into, Group merged, GroupPermission intoPerms, GroupPermission mergedPerms) {
+		// snapshots, so both member lists are read as they were at one point in time
+		GroupSnapshot intoState = into.getSnapshot();
+		GroupSnapshot mergedState = merged.getSnapshot();
+		Map<UUID, PlayerType> newMembers = new HashMap<>();
+		Set<UUID> mergedMembers = new HashSet<>();
+		for (Map.Entry<UUID, PlayerType> member : mergedState.getMembers().entrySet()) {
+			mergedMembers.add(member.getKey());
+			if (!intoState.isMember(member.getKey())) {
+				newMembers.put(member.getKey(), member.getValue());
+			}
+		}
+		if (mergedState.getOwner() != null) {
+			mergedMembers.add(mergedState.getOwner());
+		}
+		List<Group> subgroups = new ArrayList<>();
+		for (Group subgroup : merged.getSubgroups()) {
+			if (!subgroup.equals(into) && !into.hasSuperGroup(subgroup)) {
+				subgroups.add(subgroup);
+			}
+		}
+		// permission rows belong to group ids, which all move over to the remaining group
+		Map<PlayerType, List<PermissionType>> newPermissions = new EnumMap<>(PlayerType.class);
+		for (PlayerType type : PlayerType.values()) {
+			List<PermissionType> added = new ArrayList<>();
+			for (PermissionType perm : mergedPerms.getPermissions(type)) {
+				if (!intoPerms.hasPermission(type, perm)) {
+					added.add(perm);
+				}
+			}
+			if (!added.isEmpty()) {
+				newPermissions.put(type, added);
+			}
+		}
+		List<Integer> ids = into.getGroupIds();
+		for (int id : merged.getGroupIds()) {
+			if (!ids.contains(id)) {
+				ids.add(id);
+			}
+		}
+		return new MergeDelta(into, merged, newMembers, subgroups, newPermissions, ids, mergedMembers);
+	}
+
+	public Group getInto() {
+		return into;
+	}
+
+	public Group getMerged() {
+		return merged;
+	}
+
+	/**
+	 * @return members of the merged group which aren't members of the remaining group yet, with their role
+	 */
+	public Map<UUID, PlayerType> getNewMembers() {
+		return Collections.unmodifiableMap(newMembers);
+	}
+
+	/**
+	 * @return subgroups of the merged group, which move under the remaining group
+	 */
+	public List<Group> getSubgroups() {
+		return Collections.unmodifiableList(subgroups);
+	}
+
+	/**
+	 * @return permissions the remaining group gains from the merged group
+	 */
+	public Map<PlayerType, List<PermissionType>> getNewPermissions() {
+		return Collections.unmodifiableMap(newPermissions);
+	}
+
+	/**
+	 * @return all ids of the remaining group after the merge
+	 */
+	public List<Integer> getIds() {
+		return Collections.unmodifiableList(ids);
+	}
+
+	/**
+	 * @return members and founder of the merged group
+	 */
+	public Set<UUID> getMergedMembers() {
+		return Collections.unmodifiableSet(mergedMembers);
+	}
+}
@@ -8,6 +8,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
@@ -28,6 +29,7 @@ import vg.civcraft.mc.namelayer.NameAPI;
 import vg.civcraft.mc.namelayer.NameLayerPlugin;
 import vg.civcraft.mc.namelayer.RunnableOnGroup;
 import vg.civcraft.mc.namelayer.group.Group;
+import vg.civcraft.mc.namelayer.misc.Futures;
 import vg.civcraft.mc.namelayer.permission.GroupPermission;
 import vg.civcraft.mc.namelayer.permission.PermissionType;
 
@@ -48,13 +50,18 @@ public class GUIGroupOverview {
 	}
 
 	public void showScreen() {
+		// the group names of a player always come from the database, so fetch them off the main thread
+		Futures.thenOnMainThread(gm.getGroupNamesAsync(p.getUniqueId()), this::showScreen);
+	}
+
+	private void showScreen(List<String> groupNames) {
 
 		ClickableInventory ci = new ClickableInventory(54, p.getName() + "'s groups");
-		final List<Clickable> groups = getGroupClickables();
+		final List<Clickable> groups = getGroupClickables(groupNames);
 		if (groups.size() < 45 * currentPage) {
 			// would show an empty page, so go to previous
 			currentPage--;
-			showScreen();
+			showScreen(groupNames);
 		}
 
 		for (int i = 45 * currentPage; i < 45 * (currentPage + 1)
@@ -140,9 +147,8 @@ public class GUIGroupOverview {
 		ci.showInventory(p);
 	}
 
-	private List<Clickable> getGroupClickables() {
+	private List<Clickable> getGroupClickables(List<String> groupNames) {
 		String defaultGroupName = gm.getDefaultGroup(p.getUniqueId());
-		List<String> groupNames = gm.getAllGroupNames(p.getUniqueId());
 		List<Clickable> result = new ArrayList<Clickable>();
 		Set<String> alreadyProcessed = new HashSet<String>();
 		for (String groupName : groupNames) {
@@ -286,15 +292,6 @@ public class GUIGroupOverview {
 							showScreen();
 							return;
 						}
-						if (NameLayerPlugin.getInstance().getGroupLimit() < gm
-								.countGroups(p.getUniqueId()) + 1
-								&& !(p.isOp() || p
-										.hasPermission("namelayer.admin"))) {
-							p.sendMessage(ChatColor.RED
-									+ "You cannot create any more groups! Please delete an un-needed group before making more.");
-							showScreen();
-							return;
-						}
 						// enforce regulations on the name
 						if (groupName.length() > 32) {
 							p.sendMessage(ChatColor.RED
@@ -321,40 +318,26 @@ public class GUIGroupOverview {
 							return;
 						}
 
-						if (GroupManager.getGroup(groupName) != null) {
-							p.sendMessage(ChatColor.RED
-									+ "That group is already taken. Try another unique group name.");
-							showScreen();
-							return;
-						}
-
-						final UUID uuid = p.getUniqueId();
-						Group g = new Group(groupName, uuid, false, null, -1, System.currentTimeMillis());
-						gm.createGroupAsync(g, new RunnableOnGroup() {
-							@Override
-							public void run() {
-								Player p = null;
-								p = Bukkit.getPlayer(uuid);
-								Group g = getGroup();
-								if (p != null) {
-									if (g.getGroupId() == -1) { // failure
-										p.sendMessage(ChatColor.RED + "That group is already taken or creation failed.");
-									} else {
-										p.sendMessage(ChatColor.GREEN + "The group " + g.getName() + " was successfully created.");
-										if (NameLayerPlugin.getInstance().getGroupLimit() == gm.countGroups(p.getUniqueId())) {
-											p.sendMessage(ChatColor.YELLOW + "You have reached the group limit with " 
-													+ NameLayerPlugin.getInstance().getGroupLimit()
-													+ " groups! Please delete un-needed groups if you wish to create more.");
-										}
-									}
-									showScreen();
-
-								} else {
-									NameLayerPlugin.getInstance().getLogger().log(Level.INFO, "Group {0} creation complete resulting in group id: {1}",
-											new Object[] {g.getName(), g.getGroupId()});
-								}
+						// both checks may have to ask the database, so run them off the main thread
+						CompletableFuture<Integer> groupCount = gm.countGroupsAsync(p.getUniqueId());
+						CompletableFuture<Boolean> taken = GroupManager.hasGroupAsync(groupName);
+						Futures.thenOnMainThread(CompletableFuture.allOf(groupCount, taken), done -> {
+							if (NameLayerPlugin.getInstance().getGroupLimit() < groupCount.join() + 1
+									&& !(p.isOp() || p
+											.hasPermission("namelayer.admin"))) {
+								p.sendMessage(ChatColor.RED
+										+ "You cannot create any more groups! Please delete an un-needed group before making more.");
+								showScreen();
+								return;
 							}
-						}, false);
+							if (taken.join()) {
+								p.sendMessage(ChatColor.RED
+										+ "That group is already taken. Try another unique group name.");
+								showScreen();
+								return;
+							}
+							createGroup(groupName);
+						});
 					}
 				};
 
@@ -362,6 +345,39 @@ public class GUIGroupOverview {
 		};
 		return c;
 	}
+
+	private void createGroup(String groupName) {
+		final UUID uuid = p.getUniqueId();
+		Group g = new Group(groupName, uuid, false, null, -1, System.currentTimeMillis());
+		gm.createGroupAsync(g, new RunnableOnGroup() {
+			@Override
+			public void run() {
+				Player p = null;
+				p = Bukkit.getPlayer(uuid);
+				Group g = getGroup();
+				if (p != null) {
+					if (g.getGroupId() == -1) { // failure
+						p.sendMessage(ChatColor.RED + "That group is already taken or creation failed.");
+					} else {
+						p.sendMessage(ChatColor.GREEN + "The group " + g.getName() + " was successfully created.");
+						final Player player = p;
+						Futures.thenOnMainThread(gm.countGroupsAsync(player.getUniqueId()), count -> {
+							if (NameLayerPlugin.getInstance().getGroupLimit() == count) {
+								player.sendMessage(ChatColor.YELLOW + "You have reached the group limit with " 
+										+ NameLayerPlugin.getInstance().getGroupLimit()
+										+ " groups! Please delete un-needed groups if you wish to create more.");
+							}
+						});
+					}
+					showScreen();
+
+				} else {
+					NameLayerPlugin.getInstance().getLogger().log(Level.INFO, "Group {0} creation complete resulting in group id: {1}",
+							new Object[] {g.getName(), g.getGroupId()});
+				}
+			}
+		}, false);
+	}
 	
 	private Clickable getJoinGroupClickable() {
 		ItemStack is = new ItemStack(Material.CHEST);
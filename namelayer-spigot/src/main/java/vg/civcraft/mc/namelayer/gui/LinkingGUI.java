@@ -13,6 +13,7 @@ import vg.civcraft.mc.civmodcore.inventorygui.ClickableInventory;
 import vg.civcraft.mc.civmodcore.inventorygui.DecorationStack;
 import vg.civcraft.mc.namelayer.NameLayerPlugin;
 import vg.civcraft.mc.namelayer.group.Group;
+import vg.civcraft.mc.namelayer.misc.Futures;
 import vg.civcraft.mc.namelayer.permission.PermissionType;
 
 public class LinkingGUI extends AbstractGroupGUI {
@@ -239,8 +240,12 @@ public class LinkingGUI extends AbstractGroupGUI {
 	}
 
 	private void showGroupSelector() {
+		Futures.thenOnMainThread(gm.getGroupNamesAsync(p.getUniqueId()), this::showGroupSelector);
+	}
+
+	private void showGroupSelector(List<String> groupNames) {
 		final List<Clickable> clicks = new ArrayList<Clickable>();
-		for (final String groupName : gm.getAllGroupNames(p.getUniqueId())) {
+		for (final String groupName : groupNames) {
 			Group g = gm.getGroup(groupName);
 			if (g == null) {
 				// ????
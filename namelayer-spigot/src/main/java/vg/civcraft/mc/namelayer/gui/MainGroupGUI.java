@@ -170,13 +170,28 @@ public class MainGroupGUI extends AbstractGroupGUI {
 	 */
 	private List<Clickable> constructClickables() {
 		List<Clickable> clicks = new ArrayList<>();
+		final BlackList black = NameLayerPlugin.getBlackList();
+		Map<UUID, PlayerType> invites = showInvites
+				? NameLayerPlugin.getGroupManagerDao().getInvitesForGroup(g.getName())
+				: Collections.emptyMap();
+		// the names of everyone shown are read in one go, so the items below find them cached
+		List<UUID> shown = new ArrayList<>(g.getAllMembers());
+		if (showInheritedMembers) {
+			for (Group superGroup = g.getSuperGroup(); superGroup != null; superGroup = superGroup.getSuperGroup()) {
+				shown.addAll(superGroup.getAllMembers());
+			}
+		}
+		if (showBlacklist) {
+			shown.addAll(black.getBlacklist(g));
+		}
+		shown.addAll(invites.keySet());
+		NameAPI.getCurrentNames(shown);
 		if (showInheritedMembers) {
 			if (g.hasSuperGroup()) {
 				clicks.addAll(getRecursiveInheritedMembers(g.getSuperGroup()));
 			}
 		}
 		if (showBlacklist) {
-			final BlackList black = NameLayerPlugin.getBlackList();
 			for (final UUID uuid : black.getBlacklist(g)) {
 				ItemStack is = new ItemStack(Material.LEATHER_CHESTPLATE);
 				is.setCustomModelData(709);
@@ -226,8 +241,6 @@ public class MainGroupGUI extends AbstractGroupGUI {
 
 		}
 		if (showInvites) {
-			Map<UUID, PlayerType> invites = NameLayerPlugin
-					.getGroupManagerDao().getInvitesForGroup(g.getName());
 			for (Entry<UUID, PlayerType> entry : invites.entrySet()) {
 				ItemStack is = new ItemStack(Material.CHAINMAIL_CHESTPLATE);
 				is.setCustomModelData(727);
@@ -645,15 +658,13 @@ public class MainGroupGUI extends AbstractGroupGUI {
 							+ "Could not change player rank, you should complain about this");
 					return;
 				}
-				g.removeMember(toChange);
-				g.addMember(toChange, newRank);
+				g.changeRoles(Collections.singletonMap(toChange, newRank));
 				oProm.sendMessage(ChatColor.GREEN
 						+ "You have been promoted to " + getRankName(toChange)
 						+ " in (Group) " + g.getName());
 			} else {
 				// player is offline change their perms
-				g.removeMember(toChange);
-				g.addMember(toChange, newRank);
+				g.changeRoles(Collections.singletonMap(toChange, newRank));
 			}
 			p.sendMessage(ChatColor.GREEN
 					+ NameAPI.getCurrentName(toChange)
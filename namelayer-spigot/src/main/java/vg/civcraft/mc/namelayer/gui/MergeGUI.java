@@ -13,6 +13,7 @@ import vg.civcraft.mc.civmodcore.inventorygui.DecorationStack;
 import vg.civcraft.mc.namelayer.GroupManager;
 import vg.civcraft.mc.namelayer.NameLayerPlugin;
 import vg.civcraft.mc.namelayer.group.Group;
+import vg.civcraft.mc.namelayer.misc.Futures;
 import vg.civcraft.mc.namelayer.permission.PermissionType;
 
 public class MergeGUI extends AbstractGroupGUI {
@@ -69,8 +70,11 @@ public class MergeGUI extends AbstractGroupGUI {
 	}
 
 	private void showMergeGroupSelector() {
+		Futures.thenOnMainThread(gm.getGroupNamesAsync(p.getUniqueId()), this::showMergeGroupSelector);
+	}
+
+	private void showMergeGroupSelector(final List<String> gName) {
 		ClickableInventory ci = new ClickableInventory(54, g.getName());
-		final List<String> gName = gm.getAllGroupNames(p.getUniqueId());
 		if (gName.size() < 45 * currentPage) {
 			// would show an empty page, so go to previous
 			currentPage--;
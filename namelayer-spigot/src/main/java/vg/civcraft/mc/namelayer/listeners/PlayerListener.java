@@ -12,11 +12,13 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import vg.civcraft.mc.namelayer.GroupManager;
 import vg.civcraft.mc.namelayer.NameAPI;
 import vg.civcraft.mc.namelayer.NameLayerPlugin;
 import vg.civcraft.mc.namelayer.RunnableOnGroup;
 import vg.civcraft.mc.namelayer.group.Group;
+import vg.civcraft.mc.namelayer.group.MembershipIndex;
 
 public class PlayerListener implements Listener{
 
@@ -26,6 +28,10 @@ public class PlayerListener implements Listener{
 	public void playerJoinEvent(PlayerJoinEvent event){
 		Player p = event.getPlayer();
 		UUID uuid = p.getUniqueId();
+		MembershipIndex index = GroupManager.getMembershipIndex();
+		if (index != null) {
+			index.load(uuid);
+		}
 		
 		if (!p.hasPlayedBefore()) {
 			handleFirstJoin(p);
@@ -52,6 +58,14 @@ public class PlayerListener implements Listener{
 		p.sendMessage(ChatColor.YELLOW + x);
 	}
 	
+	@EventHandler(priority=EventPriority.MONITOR)
+	public void playerQuitEvent(PlayerQuitEvent event){
+		MembershipIndex index = GroupManager.getMembershipIndex();
+		if (index != null) {
+			index.forget(event.getPlayer().getUniqueId());
+		}
+	}
+	
 	public static void addNotification(UUID u, Group g) {
 		getNotifications(u).add(g);
 	}
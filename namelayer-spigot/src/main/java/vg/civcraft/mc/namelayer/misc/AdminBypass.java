@@ -0,0 +1,87 @@
+package vg.civcraft.mc.namelayer.misc;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.server.ServerCommandEvent;
+import vg.civcraft.mc.namelayer.NameLayerPlugin;
+
+/**
+ * Remembers which online players are op or have namelayer.admin and therefore bypass all group permission
+ * checks, so access checks never have to go through the Bukkit permission system. Bukkit has no event for
+ * op or permission changes, so besides join and quit everyone online is rechecked after commands, which is
+ * how both usually change, and every now and then to catch anything else.
+ */
+public class AdminBypass implements Listener {
+
+	public static final String PERMISSION = "namelayer.admin";
+
+	private volatile Set<UUID> admins = ConcurrentHashMap.newKeySet();
+	private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+
+	/**
+	 * @param uuid the player
+	 * @return true if the player is online and bypasses group permissions
+	 */
+	public boolean has(UUID uuid) {
+		return admins.contains(uuid);
+	}
+
+	public void refresh(Player player) {
+		if (player.isOp() || player.hasPermission(PERMISSION)) {
+			admins.add(player.getUniqueId());
+		} else {
+			admins.remove(player.getUniqueId());
+		}
+	}
+
+	/**
+	 * Rechecks everyone online. Has to be called on the main thread.
+	 */
+	public void refreshAll() {
+		refreshScheduled.set(false);
+		Set<UUID> refreshed = ConcurrentHashMap.newKeySet();
+		for (Player player : Bukkit.getOnlinePlayers()) {
+			if (player.isOp() || player.hasPermission(PERMISSION)) {
+				refreshed.add(player.getUniqueId());
+			}
+		}
+		admins = refreshed;
+	}
+
+	private void scheduleRefresh() {
+		// commands change op and permissions when they run, which is after this event
+		if (refreshScheduled.compareAndSet(false, true)) {
+			Bukkit.getScheduler().runTask(NameLayerPlugin.getInstance(), this::refreshAll);
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void playerJoin(PlayerJoinEvent event) {
+		refresh(event.getPlayer());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void playerQuit(PlayerQuitEvent event) {
+		admins.remove(event.getPlayer().getUniqueId());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void playerCommand(PlayerCommandPreprocessEvent event) {
+		scheduleRefresh();
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void serverCommand(ServerCommandEvent event) {
+		scheduleRefresh();
+	}
+}
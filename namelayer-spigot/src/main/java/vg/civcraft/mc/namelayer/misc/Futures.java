@@ -0,0 +1,65 @@
+package vg.civcraft.mc.namelayer.misc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import org.bukkit.Bukkit;
+import vg.civcraft.mc.namelayer.NameLayerPlugin;
+
+/**
+ * Plumbing for the async lookup API. Lookups run on the Bukkit async scheduler, results can be handed
+ * back to the main thread with {@link #thenOnMainThread(CompletableFuture, Consumer)}.
+ */
+public final class Futures {
+
+	private static final Executor ASYNC = task -> Bukkit.getScheduler().runTaskAsynchronously(NameLayerPlugin.getInstance(), task);
+	private static final Executor MAIN_THREAD = task -> {
+		if (Bukkit.isPrimaryThread()) {
+			task.run();
+		} else {
+			Bukkit.getScheduler().runTask(NameLayerPlugin.getInstance(), task);
+		}
+	};
+
+	private Futures() {
+	}
+
+	/**
+	 * @return executor running tasks on the Bukkit async scheduler
+	 */
+	public static Executor async() {
+		return ASYNC;
+	}
+
+	/**
+	 * @return executor running tasks on the main thread, right away if already called from it
+	 */
+	public static Executor mainThread() {
+		return MAIN_THREAD;
+	}
+
+	/**
+	 * Runs a (probably blocking) lookup off the main thread.
+	 * @param lookup the lookup to run
+	 * @return future completed with the result of the lookup
+	 */
+	public static <T> CompletableFuture<T> supplyAsync(Supplier<T> lookup) {
+		return CompletableFuture.supplyAsync(lookup, ASYNC);
+	}
+
+	/**
+	 * Continues with the result of a future on the main thread. Failures are logged instead of silently dropped.
+	 * @param future the future to wait for
+	 * @param action what to do with the result on the main thread
+	 * @return future completed once the action ran
+	 */
+	public static <T> CompletableFuture<Void> thenOnMainThread(CompletableFuture<T> future, Consumer<T> action) {
+		return future.thenAcceptAsync(action, MAIN_THREAD).whenComplete((result, e) -> {
+			if (e != null) {
+				NameLayerPlugin.getInstance().getLogger().log(Level.WARNING, "Async lookup failed", e);
+			}
+		});
+	}
+}
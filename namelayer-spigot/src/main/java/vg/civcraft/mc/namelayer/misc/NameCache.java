@@ -0,0 +1,210 @@
+package vg.civcraft.mc.namelayer.misc;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import vg.civcraft.mc.namelayer.NameLayerPlugin;
+
+/**
+ * Maps player uuids to their current name and back. Names are looked up case insensitively, like the
+ * database does, but are handed out the way they are spelled. Lookups never lock, writes keep both
+ * directions in sync. Once there are more than the maximum amount of players cached, the least recently
+ * looked up ones are evicted, except for players who are online.
+ */
+public class NameCache {
+
+	private final Map<UUID, Entry> byUUID = new ConcurrentHashMap<>();
+	// by lower case name
+	private final Map<String, Entry> byName = new ConcurrentHashMap<>();
+
+	private final int maxEntries;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicBoolean evictionScheduled = new AtomicBoolean();
+
+	/**
+	 * @param maxEntries maximum amount of cached players, 0 or less for no limit
+	 */
+	public NameCache(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * Gets the cached name of a player and counts the lookup as hit or miss.
+	 * @param uuid the player
+	 * @return the name or null if it isn't cached
+	 */
+	public String getName(UUID uuid) {
+		Entry entry = touch(uuid == null ? null : byUUID.get(uuid));
+		return entry == null ? null : entry.name;
+	}
+
+	/**
+	 * Gets the cached uuid of a player and counts the lookup as hit or miss.
+	 * @param name the name of the player, case insensitive
+	 * @return the uuid or null if it isn't cached
+	 */
+	public UUID getUUID(String name) {
+		Entry entry = touch(name == null ? null : byName.get(name.toLowerCase()));
+		return entry == null ? null : entry.uuid;
+	}
+
+	private Entry touch(Entry entry) {
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		entry.lastAccess = System.currentTimeMillis();
+		return entry;
+	}
+
+	/**
+	 * Caches the current name of a player. Replaces the player's old name as well as whoever had the name before.
+	 * @param uuid the player
+	 * @param name the current name of the player
+	 */
+	public void put(UUID uuid, String name) {
+		if (uuid == null || name == null) {
+			return;
+		}
+		synchronized (this) {
+			putLocked(new Entry(uuid, name));
+		}
+		scheduleEviction();
+	}
+
+	/**
+	 * Caches many players at once, used when all of them are loaded on startup.
+	 * @param names current name by uuid
+	 */
+	public void putAll(Map<UUID, String> names) {
+		synchronized (this) {
+			for (Map.Entry<UUID, String> name : names.entrySet()) {
+				if (name.getKey() != null && name.getValue() != null) {
+					putLocked(new Entry(name.getKey(), name.getValue()));
+				}
+			}
+		}
+		scheduleEviction();
+	}
+
+	private void putLocked(Entry entry) {
+		Entry old = byUUID.put(entry.uuid, entry);
+		if (old != null) {
+			byName.remove(old.lower, old);
+		}
+		Entry previousOwner = byName.put(entry.lower, entry);
+		if (previousOwner != null && !previousOwner.uuid.equals(entry.uuid)) {
+			byUUID.remove(previousOwner.uuid, previousOwner);
+		}
+	}
+
+	/**
+	 * Forgets a player in both directions.
+	 * @param uuid the player
+	 */
+	public synchronized void remove(UUID uuid) {
+		if (uuid == null) {
+			return;
+		}
+		Entry entry = byUUID.remove(uuid);
+		if (entry != null) {
+			byName.remove(entry.lower, entry);
+		}
+	}
+
+	public synchronized void clear() {
+		byUUID.clear();
+		byName.clear();
+	}
+
+	private void scheduleEviction() {
+		if (maxEntries > 0 && byUUID.size() > maxEntries && evictionScheduled.compareAndSet(false, true)) {
+			// pinning needs the online players, so eviction always runs on the main thread
+			Bukkit.getScheduler().runTask(NameLayerPlugin.getInstance(), this::evict);
+		}
+	}
+
+	/**
+	 * Evicts the least recently looked up players until the cache is back below 90% of its limit, so
+	 * eviction doesn't immediately run again. Has to be called on the main thread.
+	 */
+	public void evict() {
+		evictionScheduled.set(false);
+		if (maxEntries <= 0 || byUUID.size() <= maxEntries) {
+			return;
+		}
+		Set<UUID> online = new HashSet<>();
+		for (Player p : Bukkit.getOnlinePlayers()) {
+			online.add(p.getUniqueId());
+		}
+		List<Entry> entries = new ArrayList<>(byUUID.values());
+		entries.sort((a, b) -> Long.compare(a.lastAccess, b.lastAccess));
+		int target = maxEntries * 9 / 10;
+		int size = entries.size();
+		int evicted = 0;
+		synchronized (this) {
+			for (Entry entry : entries) {
+				if (size <= target) {
+					break;
+				}
+				if (online.contains(entry.uuid)) {
+					continue;
+				}
+				if (byUUID.remove(entry.uuid, entry)) {
+					byName.remove(entry.lower, entry);
+					size--;
+					evicted++;
+				}
+			}
+		}
+		if (evicted == 0) {
+			return;
+		}
+		evictions.addAndGet(evicted);
+		NameLayerPlugin.getInstance().getLogger().log(Level.INFO,
+				"Evicted {0} player names from cache, {1} remaining. Hits: {2}, misses: {3}, evictions: {4}",
+				new Object[] {evicted, size, hits.get(), misses.get(), evictions.get()});
+	}
+
+	public int size() {
+		return byUUID.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	private static final class Entry {
+		private final UUID uuid;
+		private final String name;
+		private final String lower;
+		private volatile long lastAccess = System.currentTimeMillis();
+
+		Entry(UUID uuid, String name) {
+			this.uuid = uuid;
+			this.name = name;
+			this.lower = name.toLowerCase();
+		}
+	}
+}
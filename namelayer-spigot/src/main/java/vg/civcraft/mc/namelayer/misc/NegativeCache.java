@@ -0,0 +1,69 @@
+package vg.civcraft.mc.namelayer.misc;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Remembers for a short while that a lookup found nothing, so repeated lookups for the same missing key
+ * don't go to the database every time. Whoever creates the missing thing has to invalidate the key.
+ *
+ * @param <K> the lookup key
+ */
+public class NegativeCache<K> {
+
+	private final Map<K, Long> missingUntil = new ConcurrentHashMap<>();
+	private final AtomicInteger marks = new AtomicInteger();
+	private final long ttl;
+
+	/**
+	 * @param ttl how long in ms a key is remembered as missing, 0 or less disables the cache
+	 */
+	public NegativeCache(long ttl) {
+		this.ttl = ttl;
+	}
+
+	/**
+	 * @param key the key to check
+	 * @return true if the key was looked up recently and didn't exist
+	 */
+	public boolean isMissing(K key) {
+		Long until = missingUntil.get(key);
+		if (until == null) {
+			return false;
+		}
+		if (until < System.currentTimeMillis()) {
+			missingUntil.remove(key, until);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Remembers that a key doesn't exist.
+	 * @param key the key which wasn't found
+	 */
+	public void markMissing(K key) {
+		if (ttl <= 0) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		missingUntil.put(key, now + ttl);
+		// expired keys are only dropped on lookup, so sweep every now and then to stay small
+		if ((marks.incrementAndGet() & 255) == 0 && missingUntil.size() > 1024) {
+			missingUntil.values().removeIf(until -> until < now);
+		}
+	}
+
+	/**
+	 * Forgets that a key was missing, call this when it was created.
+	 * @param key the key which now exists
+	 */
+	public void invalidate(K key) {
+		missingUntil.remove(key);
+	}
+
+	public void clear() {
+		missingUntil.clear();
+	}
+}
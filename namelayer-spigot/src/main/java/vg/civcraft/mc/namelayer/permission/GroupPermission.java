@@ -1,32 +1,74 @@
 package vg.civcraft.mc.namelayer.permission;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import vg.civcraft.mc.namelayer.GroupManager;
 import vg.civcraft.mc.namelayer.GroupManager.PlayerType;
 import vg.civcraft.mc.namelayer.NameLayerPlugin;
 import vg.civcraft.mc.namelayer.database.GroupManagerDao;
 import vg.civcraft.mc.namelayer.group.Group;
+import vg.civcraft.mc.namelayer.replication.GroupDelta;
 
 public class GroupPermission {
 
-	private Map<PlayerType, List<PermissionType>> perms;
+	private static final PlayerType[] PLAYER_TYPES = PlayerType.values();
+	
+	// one bitset per PlayerType ordinal, bit n is set if the permission with id n is granted. Bitsets are
+	// replaced instead of changed, the array makes the replacement visible to readers on other threads
+	private final AtomicReferenceArray<long[]> perms = new AtomicReferenceArray<>(PLAYER_TYPES.length);
 	private GroupManagerDao db = NameLayerPlugin.getGroupManagerDao();
 	
-	private Group group;
+	private volatile Group group;
 	public GroupPermission(Group group){
 		this.group = group;
 		loadPermsforGroup();
 	}
 	
+	/**
+	 * Creates the GroupPermission from permissions which were already loaded, for example by a warm load.
+	 * @param group The group the permissions belong to.
+	 * @param perms The permissions by PlayerType.
+	 */
+	public GroupPermission(Group group, Map<PlayerType, List<PermissionType>> perms){
+		this.group = group;
+		fill(perms);
+	}
+	
+	/**
+	 * @return The group these permissions belong to.
+	 */
+	public Group getGroup(){
+		return group;
+	}
+	
+	void setGroup(Group group){
+		this.group = group;
+	}
+	
 	private void loadPermsforGroup(){
-		perms = db.getPermissions(group.getName());
-		//to save ourselves from trouble later, we ensure that every perm type has at least an empty list
-		for(PlayerType pType : PlayerType.values()) {
-			perms.computeIfAbsent(pType, k -> new ArrayList<>());
+		fill(db.getPermissions(group.getName()));
+	}
+	
+	private void fill(Map<PlayerType, List<PermissionType>> loaded){
+		for (int i = 0; i < perms.length(); i++) {
+			perms.set(i, new long[0]);
+		}
+		for (Map.Entry<PlayerType, List<PermissionType>> entry : loaded.entrySet()) {
+			if (entry.getKey() == null) {
+				continue;
+			}
+			for (PermissionType perm : entry.getValue()) {
+				if (perm != null) {
+					set(entry.getKey(), perm.getId(), true);
+				}
+			}
 		}
 	}
+	
 	/**
 	 * Checks if a certain PlayerType has the given permission. DONT USE THIS DIRECTLY. Use GroupManager.hasAccess() instead!
 	 * @param playerType The PlayerType in question.
@@ -37,14 +79,70 @@ public class GroupPermission {
 		if (playerType == null || perm == null) {
 			return false;
 		}
-		List<PermissionType> per = perms.get(playerType);
-		if (per == null || per.isEmpty()){
+		return isSet(perms.get(playerType.ordinal()), perm.getId());
+	}
+
+	private static boolean isSet(long[] bits, int id) {
+		int word = id >>> 6;
+		return word < bits.length && (bits[word] & (1L << id)) != 0;
+	}
+
+	/**
+	 * Flips a single bit. The bitset of a PlayerType is copied on write, so readers never see it half resized.
+	 * @return true if the bit changed
+	 */
+	private synchronized boolean set(PlayerType playerType, int id, boolean value) {
+		long[] bits = perms.get(playerType.ordinal());
+		if (isSet(bits, id) == value) {
 			return false;
 		}
-		if (per.contains(perm)){
-			return true;
+		int word = id >>> 6;
+		long[] updated = Arrays.copyOf(bits, Math.max(bits.length, word + 1));
+		if (value) {
+			updated[word] |= 1L << id;
+		} else {
+			updated[word] &= ~(1L << id);
+		}
+		perms.set(playerType.ordinal(), updated);
+		return true;
+	}
+
+	/**
+	 * Adds all permissions of a PlayerType to a bitset indexed by permission id.
+	 * @param type The PlayerType whose permissions to add.
+	 * @param into The bitset to add to, left untouched.
+	 * @return A new bitset with the permissions of both.
+	 */
+	public long[] addPermissionBits(PlayerType type, long[] into) {
+		long[] bits = perms.get(type.ordinal());
+		long[] result = Arrays.copyOf(into, Math.max(into.length, bits.length));
+		for (int i = 0; i < bits.length; i++) {
+			result[i] |= bits[i];
+		}
+		return result;
+	}
+
+	/**
+	 * @param type The PlayerType to list the permissions for.
+	 * @return All permissions the PlayerType has, ordered by id.
+	 */
+	public List<PermissionType> getPermissions(PlayerType type){
+		List<PermissionType> result = new ArrayList<>();
+		if (type == null) {
+			return result;
+		}
+		long[] bits = perms.get(type.ordinal());
+		for (int word = 0; word < bits.length; word++) {
+			long remaining = bits[word];
+			while (remaining != 0) {
+				PermissionType perm = PermissionType.getPermission((word << 6) + Long.numberOfTrailingZeros(remaining));
+				if (perm != null) {
+					result.add(perm);
+				}
+				remaining &= remaining - 1;
+			}
 		}
-		return false;
+		return result;
 	}
 
 	/**
@@ -53,13 +151,11 @@ public class GroupPermission {
 	 * @return Returns a String representation of the permissions. Should be sent to the player in this form.
 	 */
 	public String listPermsforPlayerType(PlayerType type){
-		String x = "The permission types are: ";
-		for (PermissionType pType: perms.get(type)) {
-			if (pType != null) {
-				x += pType.getName() + " ";
-			}
+		StringBuilder x = new StringBuilder("The permission types are: ");
+		for (PermissionType pType: getPermissions(type)) {
+			x.append(pType.getName()).append(' ');
 		}
-		return x;
+		return x.toString();
 	}
 
 	/**
@@ -73,13 +169,13 @@ public class GroupPermission {
 	}
 
 	public boolean addPermission(PlayerType pType, PermissionType permType, boolean savetodb) {
-		List<PermissionType> playerPerms = perms.get(pType);
-		if (playerPerms == null || playerPerms.contains(permType)) {
+		if (pType == null || permType == null || !set(pType, permType.getId(), true)) {
 			return false;
 		}
-		playerPerms.add(permType);
+		group.invalidateEffectivePermissions(null);
 		if (savetodb) {
 			db.addPermission(group.getName(), pType.name(), Collections.singletonList(permType));
+			GroupManager.replicate(GroupDelta.ofPermission(GroupDelta.Kind.PERMISSION_ADD, group.getName(), pType, permType.getName()));
 		}
 		return true;
 	}
@@ -95,25 +191,28 @@ public class GroupPermission {
 	}
 	
 	public boolean removePermission(PlayerType pType, PermissionType permType, boolean savetodb) {
-		List<PermissionType> playerPerms = perms.get(pType);
-		if (playerPerms == null || !playerPerms.contains(permType)) {
+		if (pType == null || permType == null || !set(pType, permType.getId(), false)) {
 			return false;
 		}
-		playerPerms.remove(permType);
+		group.invalidateEffectivePermissions(null);
 		if (savetodb) {
 			db.removePermissionAsync(group.getName(), pType, permType);
+			GroupManager.replicate(GroupDelta.ofPermission(GroupDelta.Kind.PERMISSION_REMOVE, group.getName(), pType, permType.getName()));
 		}
 		return true;
 	}
 
 	/**
-	 * Returns the first PlayerType with a specific permission.
+	 * Returns the first PlayerType with a specific permission, lowest rank first.
 	 * @param type The PermissionType you are looking for.
-	 * @return Returns the first PlayerType with the permission or false if none was found.
+	 * @return Returns the first PlayerType with the permission or null if none was found.
 	 */
 	public PlayerType getFirstWithPerm(PermissionType type){
-		for (PlayerType pType: perms.keySet()){
-			if (perms.get(pType).contains(type))
+		if (type == null) {
+			return null;
+		}
+		for (PlayerType pType : PLAYER_TYPES){
+			if (isSet(perms.get(pType.ordinal()), type.getId()))
 				return pType;
 		}
 		return null;
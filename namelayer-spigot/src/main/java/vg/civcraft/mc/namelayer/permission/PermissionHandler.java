@@ -1,27 +1,119 @@
 package vg.civcraft.mc.namelayer.permission;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import vg.civcraft.mc.namelayer.group.Group;
 
+/**
+ * Caches the permissions of every loaded group by the group's lower case name, like the group cache does. Ids
+ * can change when groups are merged or reloaded, names can't. Entries live exactly as long as the group is
+ * cached by the GroupManager, which removes them on eviction, invalidation and deletion. Concurrent lookups
+ * for a group which isn't loaded yet wait for a single database load.
+ */
 public class PermissionHandler {
-	
-	private Map<Group, GroupPermission> permissions = new HashMap<Group, GroupPermission>();
+
+	private final Map<String, GroupPermission> permissions = new ConcurrentHashMap<>();
+	// one load per group at a time, also used as lock so a removal can't be undone by a finishing load
+	private final Map<String, CompletableFuture<GroupPermission>> loads = new ConcurrentHashMap<>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
 	/**
 	 * Gets the specific GroupPermission for a Group.
 	 * @param group- The group.
 	 * @return Returns the GroupPermission.
 	 */
 	public GroupPermission getGroupPermission(Group group){
-		if (!permissions.containsKey(group))
-			permissions.put(group, new GroupPermission(group));
-		return permissions.get(group);
+		String key = key(group);
+		GroupPermission perm = permissions.get(key);
+		if (perm != null) {
+			hits.incrementAndGet();
+			if (perm.getGroup() != group && group.isValid()) {
+				// the group was reloaded, edits have to reach the instance everyone uses now
+				perm.setGroup(group);
+			}
+			return perm;
+		}
+		misses.incrementAndGet();
+		CompletableFuture<GroupPermission> load = new CompletableFuture<>();
+		CompletableFuture<GroupPermission> running = loads.putIfAbsent(key, load);
+		if (running != null) {
+			return running.join();
+		}
+		try {
+			perm = new GroupPermission(group);
+		} catch (RuntimeException e) {
+			loads.remove(key, load);
+			load.completeExceptionally(e);
+			throw e;
+		}
+		synchronized (loads) {
+			// only publish if nobody removed the group while it was loading
+			if (loads.remove(key, load)) {
+				permissions.put(key, perm);
+			}
+		}
+		load.complete(perm);
+		return perm;
+	}
+	/**
+	 * @param group the group
+	 * @return the group's permissions if they are loaded, null otherwise
+	 */
+	public GroupPermission getCachedPermission(Group group){
+		return permissions.get(key(group));
 	}
 	/**
-	 * Deletes a Group's perms, should only be used if deleting a group.
+	 * Adds already loaded permissions, used when all groups are warm loaded at startup.
+	 * @param loaded- GroupPermissions by the Group they belong to.
+	 */
+	public void preload(Map<Group, GroupPermission> loaded){
+		for (Map.Entry<Group, GroupPermission> entry : loaded.entrySet()) {
+			permissions.put(key(entry.getKey()), entry.getValue());
+		}
+	}
+	/**
+	 * Deletes a Group's perms, used when the group is deleted or leaves the GroupManager's cache.
 	 * @param group- The Group that was deleted.
 	 */
 	public void deletePerms(Group group){
-		permissions.remove(group);
+		String key = key(group);
+		synchronized (loads) {
+			loads.remove(key);
+			permissions.remove(key);
+		}
+		// whatever gets loaded next may differ
+		group.invalidateEffectivePermissions(null);
+	}
+
+	private static String key(Group group) {
+		return group.getName().toLowerCase();
+	}
+
+	/**
+	 * @return amount of groups whose permissions are cached
+	 */
+	public int size() {
+		return permissions.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return share of lookups answered from the cache, between 0 and 1
+	 */
+	public double getHitRate() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return total == 0 ? 0 : (double) h / total;
 	}
 }
@@ -129,7 +129,7 @@ public class PermissionType {
 	private String description;
 	private boolean canBeBlacklisted;
 
-	private PermissionType(String name, int id, List <PlayerType> defaultPermLevels, String description, boolean canBeBlacklisted) {
+	PermissionType(String name, int id, List <PlayerType> defaultPermLevels, String description, boolean canBeBlacklisted) {
 		this.name = name;
 		this.id = id;
 		this.defaultPermLevels = defaultPermLevels;
@@ -0,0 +1,155 @@
+package vg.civcraft.mc.namelayer.replication;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+import vg.civcraft.mc.namelayer.NameLayerPlugin;
+import vg.civcraft.mc.namelayer.database.GroupManagerDao;
+
+/**
+ * Replicates through the group_change_log table, for servers which share nothing but the database. Published
+ * deltas are appended to the table, every server polls it for rows newer than the last one it read and
+ * prunes rows older than the retention every now and then. Rows are read in id order, but a row can become
+ * visible after a later one was already read if two servers insert at the same time, so skipped ids are
+ * looked for again for a few seconds.
+ * <p>
+ * Rows are pruned by age, not once every server read them, since servers don't know about each other. A
+ * server which didn't catch up with the log for longer than the retention, because the database was down or
+ * the server stalled, may have missed pruned rows. It then skips to the end of the log and delivers a
+ * {@link GroupDelta.Kind#RESYNC}, so all caches are reloaded.
+ */
+public class ChangeLogTransport implements ReplicationTransport {
+
+	private static final int POLL_LIMIT = 1000;
+	// how long a skipped id is waited for, ids of rolled back inserts are never filled
+	private static final long GAP_TIMEOUT = 5000;
+	private static final int MAX_GAPS = 1000;
+	private static final long PRUNE_INTERVAL = 60000;
+
+	private final GroupManagerDao db;
+	private final Logger logger;
+	private final long retention;
+	private final List<Consumer<GroupDelta>> receivers = new CopyOnWriteArrayList<>();
+
+	private long lastId = -1;
+	// skipped ids by when they were noticed
+	private final TreeMap<Long, Long> gaps = new TreeMap<>();
+	private long lastPrune;
+	// last time a poll read everything there was
+	private long lastCaughtUp;
+	private BukkitTask task;
+
+	/**
+	 * @param retention how long in seconds changes are kept
+	 */
+	public ChangeLogTransport(GroupManagerDao db, Logger logger, long retention) {
+		this.db = db;
+		this.logger = logger;
+		this.retention = retention;
+	}
+
+	/**
+	 * Starts polling off the main thread.
+	 * @param interval ticks between polls
+	 */
+	public synchronized void start(long interval) {
+		if (task == null) {
+			task = Bukkit.getScheduler().runTaskTimerAsynchronously(NameLayerPlugin.getInstance(), this::poll, interval, interval);
+		}
+	}
+
+	@Override
+	public void publish(GroupDelta delta) {
+		db.addChange(delta.getGroup(), delta.getKind().name(), delta.encode());
+	}
+
+	@Override
+	public void subscribe(Consumer<GroupDelta> receiver) {
+		receivers.add(receiver);
+	}
+
+	/**
+	 * Reads and delivers all changes since the last poll.
+	 */
+	public synchronized void poll() {
+		long now = System.currentTimeMillis();
+		if (lastId < 0) {
+			// history from before this server started is already in the database
+			lastId = db.getLastChangeId();
+			lastCaughtUp = now;
+			return;
+		}
+		if (now - lastCaughtUp > Math.max(retention * 1000 / 2, retention * 1000 - GAP_TIMEOUT)) {
+			// rows this server didn't read yet may be pruned already
+			long last = db.getLastChangeId();
+			if (last < 0) {
+				return;
+			}
+			logger.log(Level.WARNING, "Fell behind the change log for {0} ms, reloading all caches", now - lastCaughtUp);
+			lastId = last;
+			gaps.clear();
+			lastCaughtUp = now;
+			deliver(GroupDelta.resync());
+			return;
+		}
+		long from = gaps.isEmpty() ? lastId : Math.min(lastId, gaps.firstKey() - 1);
+		TreeMap<Long, String> changes = db.getChanges(from, POLL_LIMIT);
+		if (changes == null) {
+			return;
+		}
+		for (Map.Entry<Long, String> change : changes.entrySet()) {
+			long id = change.getKey();
+			if (id <= lastId) {
+				if (gaps.remove(id) != null) {
+					deliver(change.getValue());
+				}
+				continue;
+			}
+			for (long skipped = lastId + 1; skipped < id && gaps.size() < MAX_GAPS; skipped++) {
+				gaps.put(skipped, now);
+			}
+			lastId = id;
+			deliver(change.getValue());
+		}
+		if (changes.size() < POLL_LIMIT) {
+			lastCaughtUp = now;
+		}
+		gaps.values().removeIf(noticed -> now - noticed > GAP_TIMEOUT);
+		if (now - lastPrune > PRUNE_INTERVAL) {
+			lastPrune = now;
+			db.pruneChanges(retention);
+		}
+	}
+
+	private void deliver(String encoded) {
+		GroupDelta delta;
+		try {
+			delta = GroupDelta.decode(encoded);
+		} catch (IllegalArgumentException e) {
+			logger.log(Level.WARNING, "Problem decoding change " + encoded, e);
+			return;
+		}
+		deliver(delta);
+	}
+
+	private void deliver(GroupDelta delta) {
+		for (Consumer<GroupDelta> receiver : receivers) {
+			receiver.accept(delta);
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		if (task != null) {
+			task.cancel();
+			task = null;
+		}
+		receivers.clear();
+	}
+}
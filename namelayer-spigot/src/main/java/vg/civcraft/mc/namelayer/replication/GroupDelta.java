@@ -0,0 +1,175 @@
+package vg.civcraft.mc.namelayer.replication;
+
+import java.util.UUID;
+import vg.civcraft.mc.namelayer.GroupManager.PlayerType;
+
+/**
+ * A single change to a group, small enough to be sent to other servers which then apply it to their cached
+ * copy of the group instead of reloading it. Which of the fields are set depends on the kind of change.
+ */
+public final class GroupDelta {
+
+	public enum Kind {
+		/** player joined or changed role, uses player and role */
+		MEMBER_ADD,
+		/** uses player */
+		MEMBER_REMOVE,
+		/** uses role and permission */
+		PERMISSION_ADD,
+		/** uses role and permission */
+		PERMISSION_REMOVE,
+		/** uses player */
+		BLACKLIST_ADD,
+		/** uses player */
+		BLACKLIST_REMOVE,
+		/** uses player and role */
+		INVITE_ADD,
+		/** uses player */
+		INVITE_REMOVE,
+		/** group became the supergroup of other */
+		LINK,
+		/** group is no longer the supergroup of other */
+		UNLINK,
+		/** uses player, the new owner */
+		OWNER,
+		/** other was merged into group */
+		MERGE,
+		/** group was deleted */
+		DELETE,
+		/** group became the default group of player */
+		DEFAULT_GROUP,
+		/** player changed their name to other, has no group */
+		NAME,
+		/** anything else, the group has to be reloaded */
+		INVALIDATE,
+		/** changes may have been missed, every cache has to be reloaded. Has no group, never sent to other servers */
+		RESYNC
+	}
+
+	// group names can't contain it, see migration 12
+	private static final String SEPARATOR = "|";
+
+	private final UUID origin;
+	private final Kind kind;
+	private final String group;
+	private final UUID player;
+	private final PlayerType role;
+	private final String permission;
+	private final String other;
+
+	private GroupDelta(UUID origin, Kind kind, String group, UUID player, PlayerType role, String permission, String other) {
+		this.origin = origin;
+		this.kind = kind;
+		this.group = group;
+		this.player = player;
+		this.role = role;
+		this.permission = permission;
+		this.other = other;
+	}
+
+	public static GroupDelta ofPlayer(Kind kind, String group, UUID player) {
+		return new GroupDelta(null, kind, group, player, null, null, null);
+	}
+
+	public static GroupDelta ofRole(Kind kind, String group, UUID player, PlayerType role) {
+		return new GroupDelta(null, kind, group, player, role, null, null);
+	}
+
+	public static GroupDelta ofPermission(Kind kind, String group, PlayerType role, String permission) {
+		return new GroupDelta(null, kind, group, null, role, permission, null);
+	}
+
+	public static GroupDelta ofGroups(Kind kind, String group, String other) {
+		return new GroupDelta(null, kind, group, null, null, null, other);
+	}
+
+	public static GroupDelta nameChange(UUID player, String newName) {
+		return new GroupDelta(null, Kind.NAME, null, player, null, null, newName);
+	}
+
+	public static GroupDelta invalidate(String group) {
+		return new GroupDelta(null, Kind.INVALIDATE, group, null, null, null, null);
+	}
+
+	public static GroupDelta resync() {
+		return new GroupDelta(null, Kind.RESYNC, null, null, null, null, null);
+	}
+
+	/**
+	 * @param origin the server publishing the delta
+	 * @return a copy of this delta stamped with the server it came from
+	 */
+	public GroupDelta withOrigin(UUID origin) {
+		return new GroupDelta(origin, kind, group, player, role, permission, other);
+	}
+
+	/**
+	 * @return the delta as a single line, see {@link #decode(String)}
+	 */
+	public String encode() {
+		return String.join(SEPARATOR, str(origin), kind.name(), str(group), str(player), str(role), str(permission), str(other));
+	}
+
+	/**
+	 * @param encoded a delta as returned by {@link #encode()}
+	 * @return the decoded delta
+	 * @throws IllegalArgumentException if the line isn't an encoded delta
+	 */
+	public static GroupDelta decode(String encoded) {
+		String[] parts = encoded.split("\\" + SEPARATOR, -1);
+		if (parts.length != 7) {
+			throw new IllegalArgumentException("Not a group delta: " + encoded);
+		}
+		return new GroupDelta(parts[0].isEmpty() ? null : UUID.fromString(parts[0]), Kind.valueOf(parts[1]),
+				parts[2].isEmpty() ? null : parts[2],
+				parts[3].isEmpty() ? null : UUID.fromString(parts[3]),
+				parts[4].isEmpty() ? null : PlayerType.valueOf(parts[4]),
+				parts[5].isEmpty() ? null : parts[5], parts[6].isEmpty() ? null : parts[6]);
+	}
+
+	private static String str(Object value) {
+		return value == null ? "" : value.toString();
+	}
+
+	/**
+	 * @return the server which published the delta, null if it wasn't published yet
+	 */
+	public UUID getOrigin() {
+		return origin;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public String getGroup() {
+		return group;
+	}
+
+	public UUID getPlayer() {
+		return player;
+	}
+
+	public PlayerType getRole() {
+		return role;
+	}
+
+	/**
+	 * @return name of the permission
+	 */
+	public String getPermission() {
+		return permission;
+	}
+
+	/**
+	 * @return name of the second group for links and merges
+	 */
+	public String getOther() {
+		return other;
+	}
+
+	@Override
+	public String toString() {
+		return encode();
+	}
+}
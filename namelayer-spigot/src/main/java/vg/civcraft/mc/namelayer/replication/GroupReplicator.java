@@ -0,0 +1,218 @@
+package vg.civcraft.mc.namelayer.replication;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import org.bukkit.Bukkit;
+import vg.civcraft.mc.namelayer.GroupManager;
+import vg.civcraft.mc.namelayer.GroupManager.PlayerType;
+import vg.civcraft.mc.namelayer.NameAPI;
+import vg.civcraft.mc.namelayer.NameLayerPlugin;
+import vg.civcraft.mc.namelayer.events.GroupInvalidationEvent;
+import vg.civcraft.mc.namelayer.group.BlackList;
+import vg.civcraft.mc.namelayer.group.Group;
+import vg.civcraft.mc.namelayer.group.MembershipIndex;
+import vg.civcraft.mc.namelayer.misc.Futures;
+import vg.civcraft.mc.namelayer.permission.GroupPermission;
+import vg.civcraft.mc.namelayer.permission.PermissionType;
+
+/**
+ * Keeps the caches of several servers sharing one database in sync. Every change this server writes to the
+ * database is published as a {@link GroupDelta}, deltas from other servers are applied to whatever this
+ * server has cached, without touching the database. Groups which aren't cached are left alone, they are
+ * read fresh from the database once they are needed. A {@link GroupInvalidationEvent} is fired for every
+ * applied delta, with the kind of change as reason and the group name followed by the delta as parameters.
+ */
+public class GroupReplicator {
+
+	private final UUID serverId = UUID.randomUUID();
+	private volatile ReplicationTransport transport;
+
+	private final AtomicLong published = new AtomicLong();
+	private final AtomicLong applied = new AtomicLong();
+
+	/**
+	 * Replaces the transport deltas are sent and received with, null turns replication off.
+	 * @param transport the new transport
+	 */
+	public synchronized void setTransport(ReplicationTransport transport) {
+		ReplicationTransport old = this.transport;
+		if (old != null) {
+			old.close();
+		}
+		this.transport = transport;
+		if (transport != null) {
+			transport.subscribe(this::receive);
+		}
+	}
+
+	public ReplicationTransport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * @return random id of this server, deltas published by it carry it as their origin
+	 */
+	public UUID getServerId() {
+		return serverId;
+	}
+
+	/**
+	 * Sends a change this server made to all other servers.
+	 * @param delta the change
+	 */
+	public void publish(GroupDelta delta) {
+		ReplicationTransport current = transport;
+		if (current == null || delta.getKind() == GroupDelta.Kind.RESYNC) {
+			return;
+		}
+		published.incrementAndGet();
+		try {
+			current.publish(delta.withOrigin(serverId));
+		} catch (RuntimeException e) {
+			NameLayerPlugin.getInstance().getLogger().log(Level.WARNING, "Problem publishing group delta " + delta, e);
+		}
+	}
+
+	private void receive(GroupDelta delta) {
+		if (serverId.equals(delta.getOrigin())) {
+			return;
+		}
+		Futures.mainThread().execute(() -> apply(delta));
+	}
+
+	/**
+	 * Applies a change made by another server to the caches of this one. Has to be called on the main thread.
+	 * @param delta the change
+	 */
+	public void apply(GroupDelta delta) {
+		Group group = GroupManager.getCachedGroup(delta.getGroup());
+		MembershipIndex index = GroupManager.getMembershipIndex();
+		switch (delta.getKind()) {
+		case MEMBER_ADD:
+			if (group != null) {
+				group.addMember(delta.getPlayer(), delta.getRole(), false);
+			} else {
+				index.setMember(delta.getPlayer(), delta.getGroup(), delta.getRole());
+			}
+			break;
+		case MEMBER_REMOVE:
+			if (group != null) {
+				group.removeMember(delta.getPlayer(), false);
+			} else {
+				index.removeMember(delta.getPlayer(), delta.getGroup());
+			}
+			break;
+		case PERMISSION_ADD:
+		case PERMISSION_REMOVE:
+			GroupPermission perms = group == null ? null : NameAPI.getGroupManager().getPermissionHandler().getCachedPermission(group);
+			PermissionType perm = PermissionType.getPermission(delta.getPermission());
+			if (perms != null && perm != null) {
+				if (delta.getKind() == GroupDelta.Kind.PERMISSION_ADD) {
+					perms.addPermission(delta.getRole(), perm, false);
+				} else {
+					perms.removePermission(delta.getRole(), perm, false);
+				}
+			}
+			break;
+		case BLACKLIST_ADD:
+		case BLACKLIST_REMOVE:
+			BlackList blackList = NameLayerPlugin.getBlackList();
+			if (blackList.isCached(delta.getGroup())) {
+				if (delta.getKind() == GroupDelta.Kind.BLACKLIST_ADD) {
+					blackList.addBlacklistMember(delta.getGroup(), delta.getPlayer(), false);
+				} else {
+					blackList.removeBlacklistMember(delta.getGroup(), delta.getPlayer(), false);
+				}
+			}
+			break;
+		case INVITE_ADD:
+			if (group != null) {
+				group.addInvite(delta.getPlayer(), delta.getRole(), false);
+			}
+			break;
+		case INVITE_REMOVE:
+			if (group != null) {
+				group.removeInvite(delta.getPlayer(), false);
+			}
+			break;
+		case LINK:
+		case UNLINK:
+			Group subgroup = GroupManager.getCachedGroup(delta.getOther());
+			if (group != null && subgroup != null) {
+				if (delta.getKind() == GroupDelta.Kind.LINK) {
+					Group.link(group, subgroup, false);
+				} else {
+					Group.unlink(group, subgroup, false);
+				}
+			} else if (subgroup != null) {
+				// the supergroup isn't here to link to, so the subgroup has to find it in the database
+				GroupManager.invalidateCache(subgroup.getName());
+			} else if (group != null) {
+				GroupManager.invalidateCache(group.getName());
+			}
+			break;
+		case OWNER:
+			if (group != null) {
+				group.transferOwnership(delta.getPlayer(), false);
+			} else {
+				index.setMember(delta.getPlayer(), delta.getGroup(), PlayerType.OWNER);
+				index.setFounder(delta.getGroup(), null, delta.getPlayer());
+			}
+			break;
+		case MERGE:
+			Group merged = GroupManager.getCachedGroup(delta.getOther());
+			if (group != null && merged != null) {
+				NameAPI.getGroupManager().doneMergeGroup(group, merged);
+			} else if (group != null) {
+				GroupManager.invalidateCache(group.getName());
+			} else if (merged != null) {
+				GroupManager.invalidateCache(merged.getName());
+			}
+			break;
+		case DELETE:
+			if (group != null) {
+				NameAPI.getGroupManager().deleteGroup(group.getName(), false);
+			}
+			break;
+		case DEFAULT_GROUP:
+			NameLayerPlugin.getDefaultGroupHandler().cacheDefaultGroup(delta.getPlayer(), delta.getGroup());
+			break;
+		case NAME:
+			// forgotten first, resetting looks the new name up for groups which indexed the player
+			NameAPI.forgetUnknownPlayer(delta.getOther(), delta.getPlayer());
+			NameAPI.resetCache(delta.getPlayer());
+			break;
+		case RESYNC:
+			GroupManager.invalidateAll();
+			NameAPI.resetCache();
+			NameLayerPlugin.getDefaultGroupHandler().reload();
+			break;
+		case INVALIDATE:
+		default:
+			if (group != null) {
+				GroupManager.invalidateCache(group.getName());
+			} else {
+				GroupManager.invalidateMissing(delta.getGroup());
+			}
+			break;
+		}
+		applied.incrementAndGet();
+		Bukkit.getPluginManager().callEvent(new GroupInvalidationEvent(delta.getKind().name(), delta.getGroup(), delta.encode()));
+	}
+
+	/**
+	 * Stops replicating.
+	 */
+	public void close() {
+		setTransport(null);
+	}
+
+	public long getPublished() {
+		return published.get();
+	}
+
+	public long getApplied() {
+		return applied.get();
+	}
+}
@@ -0,0 +1,31 @@
+package vg.civcraft.mc.namelayer.replication;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Delivers deltas to receivers in the same process right away, on the publishing thread. Useful for testing
+ * replication without a second server.
+ */
+public class LoopbackTransport implements ReplicationTransport {
+
+	private final List<Consumer<GroupDelta>> receivers = new CopyOnWriteArrayList<>();
+
+	@Override
+	public void publish(GroupDelta delta) {
+		for (Consumer<GroupDelta> receiver : receivers) {
+			receiver.accept(delta);
+		}
+	}
+
+	@Override
+	public void subscribe(Consumer<GroupDelta> receiver) {
+		receivers.add(receiver);
+	}
+
+	@Override
+	public void close() {
+		receivers.clear();
+	}
+}
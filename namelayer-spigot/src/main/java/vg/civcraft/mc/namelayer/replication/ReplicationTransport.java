@@ -0,0 +1,26 @@
+package vg.civcraft.mc.namelayer.replication;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries group deltas between servers. Implementations may deliver on any thread and may deliver a
+ * server's own deltas back to it, the {@link GroupReplicator} filters those out.
+ */
+public interface ReplicationTransport {
+
+	/**
+	 * Sends a delta to every subscribed server.
+	 * @param delta the delta, stamped with its origin
+	 */
+	void publish(GroupDelta delta);
+
+	/**
+	 * @param receiver called for every delta received
+	 */
+	void subscribe(Consumer<GroupDelta> receiver);
+
+	/**
+	 * Stops sending and receiving.
+	 */
+	void close();
+}
@@ -0,0 +1,90 @@
+package vg.civcraft.mc.namelayer.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.junit.After;
+import org.junit.Test;
+import vg.civcraft.mc.namelayer.GroupManager.PlayerType;
+
+/**
+ * Checks how batched member changes are split into statements, without a database.
+ */
+public class GroupManagerDaoBatchTest {
+
+	private static final Logger LOGGER = Logger.getLogger("GroupManagerDaoBatchTest");
+
+	static {
+		LOGGER.setLevel(Level.OFF);
+	}
+
+	private final RecordingConnection db = new RecordingConnection();
+	private final WriteBehindQueue queue = new WriteBehindQueue(LOGGER, db, 60000, 1000);
+	private final GroupManagerDao dao = new GroupManagerDao(LOGGER, null, queue);
+
+	@After
+	public void shutdown() {
+		queue.shutdown();
+	}
+
+	private static List<UUID> players(int amount) {
+		List<UUID> players = new ArrayList<>();
+		for (int i = 0; i < amount; i++) {
+			players.add(UUID.randomUUID());
+		}
+		return players;
+	}
+
+	@Test
+	public void addMembersIsChunked() {
+		Map<UUID, PlayerType> members = new LinkedHashMap<>();
+		for (UUID player : players(1201)) {
+			members.put(player, PlayerType.MODS);
+		}
+		dao.addMembers("Group", members);
+		assertEquals(3, queue.getQueueDepth());
+		queue.flush();
+		List<RecordingConnection.Execution> executions = db.executions();
+		assertEquals(3, executions.size());
+		Set<Object> written = new HashSet<>();
+		int[] expectedRows = {500, 500, 201};
+		for (int i = 0; i < 3; i++) {
+			List<Object> params = executions.get(i).params;
+			// member name and role per row, then the group name
+			assertEquals(expectedRows[i] * 2 + 1, params.size());
+			assertEquals("Group", params.get(params.size() - 1));
+			for (int row = 0; row < expectedRows[i]; row++) {
+				written.add(params.get(row * 2));
+				assertEquals(PlayerType.MODS.name(), params.get(row * 2 + 1));
+			}
+		}
+		assertEquals(members.size(), written.size());
+		for (UUID member : members.keySet()) {
+			assertTrue(written.contains(member.toString()));
+		}
+	}
+
+	@Test
+	public void removeMembersIsChunked() {
+		List<UUID> members = players(501);
+		dao.removeMembers("Group", members);
+		queue.flush();
+		List<RecordingConnection.Execution> executions = db.executions();
+		assertEquals(2, executions.size());
+		// the group name, then one placeholder per member
+		assertEquals(501, executions.get(0).params.size());
+		assertEquals(2, executions.get(1).params.size());
+		assertEquals("Group", executions.get(1).params.get(0));
+		assertEquals(members.get(500).toString(), executions.get(1).params.get(1));
+		assertTrue(executions.get(1).sql.contains("in (?)"));
+	}
+}
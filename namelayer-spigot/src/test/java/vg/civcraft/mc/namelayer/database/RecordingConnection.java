@@ -0,0 +1,109 @@
+package vg.civcraft.mc.namelayer.database;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Hands out JDBC connections which execute nothing and only record the statements run on them, in order.
+ * Statements containing the failing marker throw instead.
+ */
+class RecordingConnection implements WriteBehindQueue.ConnectionSource {
+
+	/**
+	 * One executed statement. A JDBC batch shows up as one execution per row, all with the same batch number.
+	 */
+	static final class Execution {
+		final String sql;
+		final List<Object> params;
+		final int batch;
+
+		Execution(String sql, List<Object> params, int batch) {
+			this.sql = sql;
+			this.params = params;
+			this.batch = batch;
+		}
+	}
+
+	private final List<Execution> executions = Collections.synchronizedList(new ArrayList<>());
+	private volatile String failing;
+	private int batches;
+
+	void failOn(String marker) {
+		failing = marker;
+	}
+
+	List<Execution> executions() {
+		synchronized (executions) {
+			return new ArrayList<>(executions);
+		}
+	}
+
+	@Override
+	public Connection getConnection() {
+		return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Connection.class},
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "prepareStatement":
+						return statement((String) args[0]);
+					case "close":
+						return null;
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	private PreparedStatement statement(String sql) {
+		Object[] params = new Object[64 * 1024];
+		int[] highest = new int[1];
+		List<List<Object>> rows = new ArrayList<>();
+		return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] {PreparedStatement.class}, (proxy, method, args) -> {
+					switch (method.getName()) {
+					case "setObject":
+					case "setString":
+					case "setInt":
+						params[(Integer) args[0]] = args[1];
+						highest[0] = Math.max(highest[0], (Integer) args[0]);
+						return null;
+					case "addBatch":
+						rows.add(new ArrayList<>(Arrays.asList(params).subList(1, highest[0] + 1)));
+						return null;
+					case "executeUpdate":
+						check(sql);
+						record(sql, Collections.singletonList(new ArrayList<>(Arrays.asList(params).subList(1, highest[0] + 1))));
+						return 1;
+					case "executeBatch":
+						check(sql);
+						record(sql, rows);
+						int[] counts = new int[rows.size()];
+						Arrays.fill(counts, 1);
+						return counts;
+					case "close":
+						return null;
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	private void check(String sql) throws SQLException {
+		String marker = failing;
+		if (marker != null && sql.contains(marker)) {
+			throw new SQLException("failing on purpose");
+		}
+	}
+
+	private synchronized void record(String sql, List<List<Object>> rows) {
+		int batch = batches++;
+		for (List<Object> row : rows) {
+			executions.add(new Execution(sql, row, batch));
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package vg.civcraft.mc.namelayer.database;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.junit.After;
+import org.junit.Test;
+
+public class WriteBehindQueueTest {
+
+	private static final Logger LOGGER = Logger.getLogger("WriteBehindQueueTest");
+
+	static {
+		LOGGER.setLevel(Level.OFF);
+	}
+
+	private final RecordingConnection db = new RecordingConnection();
+	private WriteBehindQueue queue;
+
+	@After
+	public void shutdown() {
+		if (queue != null) {
+			queue.shutdown();
+		}
+	}
+
+	private WriteBehindQueue holdingBack() {
+		// long enough that nothing is written unless flushed
+		queue = new WriteBehindQueue(LOGGER, db, 60000, 1000);
+		return queue;
+	}
+
+	private static List<String> keys(String... keys) {
+		return Arrays.asList(keys);
+	}
+
+	private List<Object> firstParams() {
+		List<Object> result = new ArrayList<>();
+		for (RecordingConnection.Execution execution : db.executions()) {
+			result.add(execution.params.get(0));
+		}
+		return result;
+	}
+
+	@Test
+	public void heldBackUntilFlushed() {
+		WriteBehindQueue queue = holdingBack();
+		queue.submit(keys("a"), "update a", "a", 1);
+		assertEquals(0, db.executions().size());
+		assertEquals(1, queue.getQueueDepth());
+		queue.flush();
+		assertEquals(1, db.executions().size());
+		assertEquals(0, queue.getQueueDepth());
+		assertEquals(1, queue.getWritten());
+	}
+
+	@Test
+	public void keepsSubmissionOrder() {
+		WriteBehindQueue queue = holdingBack();
+		queue.submit(keys("a"), "update x", "1", 1);
+		queue.submit(keys("a"), "update y", "2", 2);
+		queue.submit(keys("a"), "update x", "3", 3);
+		queue.submit(keys("a"), "update x", "4", 4);
+		queue.flush();
+		List<RecordingConnection.Execution> executions = db.executions();
+		assertEquals(Arrays.asList(1, 2, 3, 4), firstParams());
+		// only consecutive writes with the same statement share a batch
+		assertEquals(executions.get(2).batch, executions.get(3).batch);
+		assertEquals(3, executions.stream().mapToInt(e -> e.batch).distinct().count());
+	}
+
+	@Test
+	public void keyedFlushStopsAfterLastMatchingWrite() {
+		WriteBehindQueue queue = holdingBack();
+		queue.submit(keys("a"), "update x", "1", 1);
+		queue.submit(keys("b"), "update x", "2", 2);
+		queue.submit(keys("a", "c"), "update x", "3", 3);
+		queue.submit(keys("b"), "update x", "4", 4);
+		queue.flush(keys("c"));
+		// the write for b before the last one for c runs too, so nothing is reordered
+		assertEquals(Arrays.asList(1, 2, 3), firstParams());
+		assertEquals(1, queue.getQueueDepth());
+		queue.flush(keys("b"));
+		assertEquals(Arrays.asList(1, 2, 3, 4), firstParams());
+	}
+
+	@Test
+	public void keyedFlushWithoutPendingWritesDoesNothing() {
+		WriteBehindQueue queue = holdingBack();
+		queue.submit(keys("a"), "update x", "1", 1);
+		queue.flush(keys("b"));
+		queue.flush(Collections.emptyList());
+		assertEquals(0, db.executions().size());
+		assertEquals(1, queue.getQueueDepth());
+		queue.flush(keys("a"));
+		// executed writes no longer count as pending
+		queue.submit(keys("b"), "update x", "2", 2);
+		queue.flush(keys("a"));
+		assertEquals(1, db.executions().size());
+	}
+
+	@Test
+	public void writesRightAwayWhenNotBatching() {
+		queue = new WriteBehindQueue(LOGGER, db, 0, 1000);
+		queue.submit(keys("a"), "update x", "1", 1);
+		assertEquals(1, db.executions().size());
+		assertEquals(0, queue.getQueueDepth());
+	}
+
+	@Test
+	public void failedWritesDontStopLaterOnes() {
+		WriteBehindQueue queue = holdingBack();
+		db.failOn("broken");
+		queue.submit(keys("a"), "update x", "1", 1);
+		queue.submit(keys("a"), "update broken", "2", 2);
+		queue.submit(keys("a"), "update y", "3", 3);
+		queue.flush();
+		assertEquals(Arrays.asList(1, 3), firstParams());
+		assertEquals(1, queue.getFailed());
+		assertEquals(2, queue.getWritten());
+	}
+
+	@Test
+	public void workerWritesOnceBatchIsFull() throws InterruptedException {
+		queue = new WriteBehindQueue(LOGGER, db, 60000, 3);
+		for (int i = 0; i < 3; i++) {
+			queue.submit(keys("a"), "update x", "write", i);
+		}
+		for (int i = 0; i < 100 && db.executions().size() < 3; i++) {
+			Thread.sleep(20);
+		}
+		assertEquals(Arrays.asList(0, 1, 2), firstParams());
+	}
+
+	@Test
+	public void shutdownWritesEverything() {
+		WriteBehindQueue queue = holdingBack();
+		queue.submit(keys("a"), "update x", "1", 1);
+		queue.submit(keys("b"), "update y", "2", 2);
+		queue.shutdown();
+		assertEquals(2, db.executions().size());
+		// afterwards writes run right away
+		queue.submit(keys("a"), "update x", "3", 3);
+		assertEquals(3, db.executions().size());
+	}
+}
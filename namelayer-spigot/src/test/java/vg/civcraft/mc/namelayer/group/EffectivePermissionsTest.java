@@ -0,0 +1,69 @@
+package vg.civcraft.mc.namelayer.group;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.UUID;
+import org.junit.Test;
+
+public class EffectivePermissionsTest {
+
+	private final UUID player = UUID.randomUUID();
+	private final UUID other = UUID.randomUUID();
+
+	@Test
+	public void memoizes() {
+		EffectivePermissions perms = new EffectivePermissions();
+		long[] bits = {5L};
+		perms.put(player, bits, perms.getVersion());
+		assertSame(bits, perms.get(player));
+		assertNull(perms.get(other));
+	}
+
+	@Test
+	public void invalidatesOnePlayer() {
+		EffectivePermissions perms = new EffectivePermissions();
+		perms.put(player, new long[] {1L}, perms.getVersion());
+		perms.put(other, new long[] {2L}, perms.getVersion());
+		perms.invalidate(player);
+		assertNull(perms.get(player));
+		assertArrayEquals(new long[] {2L}, perms.get(other));
+	}
+
+	@Test
+	public void invalidatesEveryone() {
+		EffectivePermissions perms = new EffectivePermissions();
+		perms.put(player, new long[] {1L}, perms.getVersion());
+		perms.put(other, new long[] {2L}, perms.getVersion());
+		perms.invalidate(null);
+		assertNull(perms.get(player));
+		assertNull(perms.get(other));
+	}
+
+	@Test
+	public void dropsPermissionsResolvedBeforeAnInvalidation() {
+		EffectivePermissions perms = new EffectivePermissions();
+		int resolvedAt = perms.getVersion();
+		// something changes while the permissions are being resolved
+		perms.invalidate(other);
+		perms.put(player, new long[] {1L}, resolvedAt);
+		assertNull(perms.get(player));
+	}
+
+	@Test
+	public void groupInvalidatesItsSubgroups() {
+		Group parent = new Group("parent", null, false, null, 1, 0L);
+		Group child = new Group("child", null, false, null, 2, 0L);
+		Group.link(parent, child, false);
+		EffectivePermissions childPerms = child.getEffectivePermissions();
+		childPerms.put(player, new long[] {1L}, childPerms.getVersion());
+		parent.invalidateEffectivePermissions(player);
+		assertNull(childPerms.get(player));
+		// nothing travels up to the supergroup
+		EffectivePermissions parentPerms = parent.getEffectivePermissions();
+		parentPerms.put(player, new long[] {1L}, parentPerms.getVersion());
+		child.invalidateEffectivePermissions(player);
+		assertArrayEquals(new long[] {1L}, parentPerms.get(player));
+	}
+}
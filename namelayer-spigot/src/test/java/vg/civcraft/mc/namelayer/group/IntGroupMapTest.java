@@ -0,0 +1,145 @@
+package vg.civcraft.mc.namelayer.group;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+public class IntGroupMapTest {
+
+	// size of the smallest table, which is what small() gets. It stays this size up to 8 entries
+	private static final int CAPACITY = 16;
+
+	private static IntGroupMap small() {
+		return new IntGroupMap(1);
+	}
+
+	private static Group group(int id) {
+		return new Group("group" + id, null, false, null, id, 0L);
+	}
+
+	/**
+	 * Mirrors the hash of IntGroupMap, only used to pick ids which collide in a small table.
+	 */
+	private static int home(int id) {
+		return (id * 0x9E3779B9) >>> 7 & (CAPACITY - 1);
+	}
+
+	private static List<Integer> idsWithHome(int slot, int amount) {
+		List<Integer> ids = new ArrayList<>();
+		for (int id = 1; ids.size() < amount; id++) {
+			if (home(id) == slot) {
+				ids.add(id);
+			}
+		}
+		return ids;
+	}
+
+	private static void assertContent(IntGroupMap map, Map<Integer, Group> expected, int maxId) {
+		assertEquals(expected.size(), map.size());
+		for (int id = 0; id <= maxId; id++) {
+			assertSame("id " + id, expected.get(id), map.get(id));
+		}
+	}
+
+	@Test
+	public void putGetRemove() {
+		IntGroupMap map = new IntGroupMap();
+		Group first = group(1);
+		Group second = group(2);
+		map.put(1, first);
+		map.put(2, second);
+		assertSame(first, map.get(1));
+		assertSame(second, map.get(2));
+		assertNull(map.get(3));
+		map.put(1, second);
+		assertSame(second, map.get(1));
+		assertEquals(2, map.size());
+	}
+
+	@Test
+	public void removeOnlyIfStillMapped() {
+		IntGroupMap map = new IntGroupMap();
+		Group old = group(1);
+		Group current = group(1);
+		map.put(1, current);
+		assertFalse(map.remove(1, old));
+		assertSame(current, map.get(1));
+		assertTrue(map.remove(1, current));
+		assertNull(map.get(1));
+		assertFalse(map.remove(1, current));
+		assertEquals(0, map.size());
+	}
+
+	@Test
+	public void removalShiftsBackAcrossTheEndOfTheTable() {
+		// a cluster starting in the last slot wraps around into the first ones
+		List<Integer> last = idsWithHome(CAPACITY - 1, 3);
+		List<Integer> first = idsWithHome(0, 2);
+		Map<Integer, Group> expected = new HashMap<>();
+		IntGroupMap map = small();
+		for (int id : last) {
+			expected.put(id, group(id));
+			map.put(id, expected.get(id));
+		}
+		for (int id : first) {
+			expected.put(id, group(id));
+			map.put(id, expected.get(id));
+		}
+		int maxId = Math.max(last.get(2), first.get(1));
+		assertContent(map, expected, maxId);
+		// every entry behind the freed slot has to stay reachable, including the ones past the wrap
+		for (int id : last) {
+			assertTrue(map.remove(id, expected.remove(id)));
+			assertContent(map, expected, maxId);
+		}
+		for (int id : first) {
+			assertTrue(map.remove(id, expected.remove(id)));
+			assertContent(map, expected, maxId);
+		}
+	}
+
+	@Test
+	public void matchesHashMapUnderRandomChanges() {
+		Random random = new Random(42);
+		// few ids and at most 8 entries keep the table small and full of collisions
+		int maxId = 40;
+		for (int round = 0; round < 200; round++) {
+			IntGroupMap map = small();
+			Map<Integer, Group> expected = new HashMap<>();
+			for (int step = 0; step < 100; step++) {
+				int id = random.nextInt(maxId + 1);
+				if (expected.size() < 8 && random.nextBoolean()) {
+					Group group = group(id);
+					expected.put(id, group);
+					map.put(id, group);
+				} else if (expected.containsKey(id)) {
+					assertTrue(map.remove(id, expected.remove(id)));
+				}
+				assertContent(map, expected, maxId);
+			}
+		}
+	}
+
+	@Test
+	public void growsPastInitialCapacity() {
+		IntGroupMap map = small();
+		Map<Integer, Group> expected = new HashMap<>();
+		for (int id = 0; id < 1000; id++) {
+			expected.put(id * 7, group(id * 7));
+			map.put(id * 7, expected.get(id * 7));
+		}
+		for (int id = 0; id < 1000; id += 2) {
+			assertTrue(map.remove(id * 7, expected.remove(id * 7)));
+		}
+		assertContent(map, expected, 7000);
+	}
+}
@@ -0,0 +1,79 @@
+package vg.civcraft.mc.namelayer.group;
+
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+import vg.civcraft.mc.namelayer.GroupManager.PlayerType;
+
+/**
+ * Compares the heap used by a {@link MemberTable} with the HashMap it replaced, for a synthetic group.
+ * Lives with the tests so it doesn't ship, run it by hand with the test classpath:
+ * java vg.civcraft.mc.namelayer.group.MemberTableFootprint [members] [copies]
+ *
+ * Every batch gets freshly allocated UUIDs, as members loaded from the database would, and full GCs are
+ * requested around it. The figures are averaged over all copies, so they are only as exact as the heap
+ * accounting of the JVM allows.
+ */
+final class MemberTableFootprint {
+
+	private static final PlayerType[] TYPES = PlayerType.values();
+
+	private MemberTableFootprint() {
+	}
+
+	public static void main(String[] args) {
+		int members = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+		int copies = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		// warm up, so class loading and JIT data don't end up in the first measurement
+		measure(() -> fillMap(members), copies);
+		measure(() -> fillTable(members), copies);
+
+		long map = measure(() -> fillMap(members), copies);
+		long table = measure(() -> fillTable(members), copies);
+		System.out.println("Members: " + members + ", copies: " + copies);
+		System.out.printf("HashMap<UUID, PlayerType>  %,d bytes (%.1f per member)%n", map, (double) map / members);
+		System.out.printf("MemberTable                %,d bytes (%.1f per member)%n", table, (double) table / members);
+	}
+
+	private static Map<UUID, PlayerType> fillMap(int members) {
+		Map<UUID, PlayerType> map = new HashMap<>();
+		for (int i = 0; i < members; i++) {
+			map.put(UUID.randomUUID(), TYPES[i % TYPES.length]);
+		}
+		return map;
+	}
+
+	private static MemberTable fillTable(int members) {
+		MemberTable table = new MemberTable();
+		for (int i = 0; i < members; i++) {
+			table.put(UUID.randomUUID(), TYPES[i % TYPES.length]);
+		}
+		return table;
+	}
+
+	/**
+	 * @return average bytes retained by one of the created objects
+	 */
+	private static long measure(Supplier<Object> factory, int copies) {
+		List<Object> retained = new ArrayList<>(copies);
+		long before = usedMemory();
+		for (int i = 0; i < copies; i++) {
+			retained.add(factory.get());
+		}
+		long after = usedMemory();
+		Reference.reachabilityFence(retained);
+		return (after - before) / copies;
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,120 @@
+package vg.civcraft.mc.namelayer.group;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.Test;
+import vg.civcraft.mc.namelayer.GroupManager.PlayerType;
+
+public class MemberTableTest {
+
+	private static final PlayerType[] TYPES = PlayerType.values();
+
+	private static void assertContent(MemberTable table, Map<UUID, PlayerType> expected, List<UUID> known) {
+		assertEquals(expected.size(), table.size());
+		for (UUID uuid : known) {
+			assertEquals(expected.get(uuid), table.get(uuid));
+			assertEquals(expected.containsKey(uuid), table.contains(uuid));
+		}
+		assertEquals(expected, table.toMap());
+		assertEquals(expected.keySet(), new HashSet<>(table.members()));
+	}
+
+	@Test
+	public void putGetRemove() {
+		MemberTable table = new MemberTable();
+		UUID player = UUID.randomUUID();
+		assertNull(table.get(player));
+		table.put(player, PlayerType.MEMBERS);
+		assertEquals(PlayerType.MEMBERS, table.get(player));
+		table.put(player, PlayerType.OWNER);
+		assertEquals(PlayerType.OWNER, table.get(player));
+		assertEquals(1, table.size());
+		table.remove(player);
+		assertFalse(table.contains(player));
+		assertEquals(0, table.size());
+	}
+
+	@Test
+	public void nullsAreIgnored() {
+		MemberTable table = new MemberTable();
+		table.put(null, PlayerType.MEMBERS);
+		table.put(UUID.randomUUID(), null);
+		table.remove(null);
+		assertNull(table.get(null));
+		assertEquals(0, table.size());
+	}
+
+	@Test
+	public void membersByType() {
+		MemberTable table = new MemberTable();
+		UUID member = UUID.randomUUID();
+		UUID mod = UUID.randomUUID();
+		UUID otherMod = UUID.randomUUID();
+		table.put(member, PlayerType.MEMBERS);
+		table.put(mod, PlayerType.MODS);
+		table.put(otherMod, PlayerType.MODS);
+		assertEquals(new HashSet<>(Arrays.asList(mod, otherMod)), new HashSet<>(table.members(PlayerType.MODS)));
+		assertEquals(Arrays.asList(member), table.members(PlayerType.MEMBERS));
+		assertTrue(table.members(PlayerType.OWNER).isEmpty());
+	}
+
+	@Test
+	public void bulkChanges() {
+		MemberTable table = new MemberTable();
+		Map<UUID, PlayerType> expected = new HashMap<>();
+		List<UUID> known = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			UUID uuid = UUID.randomUUID();
+			known.add(uuid);
+			expected.put(uuid, TYPES[i % TYPES.length]);
+		}
+		table.putAll(expected);
+		assertContent(table, expected, known);
+		List<UUID> removed = known.subList(0, 150);
+		table.removeAll(removed);
+		for (UUID uuid : removed) {
+			expected.remove(uuid);
+		}
+		assertContent(table, expected, known);
+		table.clear();
+		expected.clear();
+		assertContent(table, expected, known);
+	}
+
+	@Test
+	public void matchesHashMapUnderRandomChanges() {
+		Random random = new Random(7);
+		for (int round = 0; round < 50; round++) {
+			MemberTable table = new MemberTable();
+			Map<UUID, PlayerType> expected = new HashMap<>();
+			// a small pool of players keeps the table small and makes probes collide and wrap around
+			List<UUID> known = new ArrayList<>();
+			for (int i = 0; i < 12; i++) {
+				known.add(new UUID(random.nextLong(), random.nextLong()));
+			}
+			for (int step = 0; step < 200; step++) {
+				UUID uuid = known.get(random.nextInt(known.size()));
+				if (random.nextBoolean()) {
+					PlayerType type = TYPES[random.nextInt(TYPES.length)];
+					expected.put(uuid, type);
+					table.put(uuid, type);
+				} else {
+					expected.remove(uuid);
+					table.remove(uuid);
+				}
+				assertContent(table, expected, known);
+			}
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package vg.civcraft.mc.namelayer.misc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.Test;
+
+public class NameCacheTest {
+
+	private final UUID player = UUID.randomUUID();
+	private final UUID other = UUID.randomUUID();
+
+	// without a limit the cache never schedules an eviction, which would need a running server
+	private final NameCache cache = new NameCache(0);
+
+	@Test
+	public void bothDirections() {
+		cache.put(player, "Steve");
+		assertEquals("Steve", cache.getName(player));
+		assertEquals(player, cache.getUUID("Steve"));
+		assertEquals(player, cache.getUUID("sTEVE"));
+		assertNull(cache.getUUID("Alex"));
+		assertNull(cache.getName(other));
+	}
+
+	@Test
+	public void renameDropsTheOldName() {
+		cache.put(player, "Steve");
+		cache.put(player, "Alex");
+		assertEquals("Alex", cache.getName(player));
+		assertEquals(player, cache.getUUID("alex"));
+		assertNull(cache.getUUID("steve"));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void takingANameDropsThePreviousOwner() {
+		cache.put(player, "Steve");
+		cache.put(other, "steve");
+		assertEquals(other, cache.getUUID("Steve"));
+		assertEquals("steve", cache.getName(other));
+		assertNull(cache.getName(player));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void removeAndClear() {
+		cache.put(player, "Steve");
+		cache.put(other, "Alex");
+		cache.remove(player);
+		assertNull(cache.getName(player));
+		assertNull(cache.getUUID("steve"));
+		assertEquals(other, cache.getUUID("alex"));
+		cache.clear();
+		assertNull(cache.getName(other));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void putAllSkipsNulls() {
+		Map<UUID, String> names = new HashMap<>();
+		names.put(player, "Steve");
+		names.put(other, null);
+		cache.putAll(names);
+		assertEquals(1, cache.size());
+		assertEquals(player, cache.getUUID("steve"));
+	}
+
+	@Test
+	public void countsHitsAndMisses() {
+		cache.put(player, "Steve");
+		cache.getName(player);
+		cache.getUUID("steve");
+		cache.getName(other);
+		cache.getUUID(null);
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+}
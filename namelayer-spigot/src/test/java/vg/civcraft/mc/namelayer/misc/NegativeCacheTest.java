@@ -0,0 +1,45 @@
+package vg.civcraft.mc.namelayer.misc;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class NegativeCacheTest {
+
+	@Test
+	public void remembersMissingKeys() {
+		NegativeCache<String> cache = new NegativeCache<>(60000);
+		assertFalse(cache.isMissing("a"));
+		cache.markMissing("a");
+		assertTrue(cache.isMissing("a"));
+		assertFalse(cache.isMissing("b"));
+	}
+
+	@Test
+	public void invalidateForgetsOneKey() {
+		NegativeCache<String> cache = new NegativeCache<>(60000);
+		cache.markMissing("a");
+		cache.markMissing("b");
+		cache.invalidate("a");
+		assertFalse(cache.isMissing("a"));
+		assertTrue(cache.isMissing("b"));
+		cache.clear();
+		assertFalse(cache.isMissing("b"));
+	}
+
+	@Test
+	public void disabledWithoutTtl() {
+		NegativeCache<String> cache = new NegativeCache<>(0);
+		cache.markMissing("a");
+		assertFalse(cache.isMissing("a"));
+	}
+
+	@Test
+	public void expires() throws InterruptedException {
+		NegativeCache<String> cache = new NegativeCache<>(20);
+		cache.markMissing("a");
+		Thread.sleep(50);
+		assertFalse(cache.isMissing("a"));
+	}
+}
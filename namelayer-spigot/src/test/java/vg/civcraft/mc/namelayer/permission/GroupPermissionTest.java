@@ -0,0 +1,110 @@
+package vg.civcraft.mc.namelayer.permission;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.Test;
+import vg.civcraft.mc.namelayer.GroupManager.PlayerType;
+import vg.civcraft.mc.namelayer.group.Group;
+
+public class GroupPermissionTest {
+
+	private static PermissionType permission(int id) {
+		return new PermissionType("PERM_" + id, id, Collections.emptyList(), null, true);
+	}
+
+	private static GroupPermission empty() {
+		Group group = new Group("test", UUID.randomUUID(), false, null, 1, 0L);
+		return new GroupPermission(group, new HashMap<>());
+	}
+
+	@Test
+	public void addAndRemove() {
+		GroupPermission perms = empty();
+		PermissionType perm = permission(3);
+		assertFalse(perms.hasPermission(PlayerType.MODS, perm));
+		assertTrue(perms.addPermission(PlayerType.MODS, perm, false));
+		assertTrue(perms.hasPermission(PlayerType.MODS, perm));
+		assertFalse(perms.hasPermission(PlayerType.MEMBERS, perm));
+		// adding twice changes nothing
+		assertFalse(perms.addPermission(PlayerType.MODS, perm, false));
+		assertTrue(perms.removePermission(PlayerType.MODS, perm, false));
+		assertFalse(perms.hasPermission(PlayerType.MODS, perm));
+		assertFalse(perms.removePermission(PlayerType.MODS, perm, false));
+	}
+
+	@Test
+	public void idsAcrossWords() {
+		GroupPermission perms = empty();
+		PermissionType first = permission(0);
+		PermissionType last = permission(63);
+		PermissionType next = permission(64);
+		PermissionType far = permission(200);
+		perms.addPermission(PlayerType.ADMINS, last, false);
+		perms.addPermission(PlayerType.ADMINS, far, false);
+		assertFalse(perms.hasPermission(PlayerType.ADMINS, first));
+		assertTrue(perms.hasPermission(PlayerType.ADMINS, last));
+		assertFalse(perms.hasPermission(PlayerType.ADMINS, next));
+		assertTrue(perms.hasPermission(PlayerType.ADMINS, far));
+		// ids beyond the bitset of another type are simply not granted
+		assertFalse(perms.hasPermission(PlayerType.MEMBERS, far));
+		perms.removePermission(PlayerType.ADMINS, far, false);
+		assertFalse(perms.hasPermission(PlayerType.ADMINS, far));
+		assertTrue(perms.hasPermission(PlayerType.ADMINS, last));
+	}
+
+	@Test
+	public void loadedPermissions() {
+		Map<PlayerType, List<PermissionType>> loaded = new HashMap<>();
+		loaded.put(PlayerType.OWNER, Arrays.asList(permission(1), permission(70), null));
+		loaded.put(null, Collections.singletonList(permission(2)));
+		GroupPermission perms = new GroupPermission(new Group("test", null, false, null, 1, 0L), loaded);
+		assertTrue(perms.hasPermission(PlayerType.OWNER, permission(1)));
+		assertTrue(perms.hasPermission(PlayerType.OWNER, permission(70)));
+		for (PlayerType type : PlayerType.values()) {
+			assertFalse(perms.hasPermission(type, permission(2)));
+		}
+	}
+
+	@Test
+	public void firstWithPermIsLowestRank() {
+		GroupPermission perms = empty();
+		PermissionType perm = permission(100);
+		assertNull(perms.getFirstWithPerm(perm));
+		perms.addPermission(PlayerType.OWNER, perm, false);
+		assertEquals(PlayerType.OWNER, perms.getFirstWithPerm(perm));
+		perms.addPermission(PlayerType.MODS, perm, false);
+		assertEquals(PlayerType.MODS, perms.getFirstWithPerm(perm));
+		perms.removePermission(PlayerType.MODS, perm, false);
+		assertEquals(PlayerType.OWNER, perms.getFirstWithPerm(perm));
+		assertNull(perms.getFirstWithPerm(null));
+	}
+
+	@Test
+	public void addPermissionBitsLeavesInputAlone() {
+		GroupPermission perms = empty();
+		perms.addPermission(PlayerType.MEMBERS, permission(65), false);
+		long[] into = {1L};
+		long[] result = perms.addPermissionBits(PlayerType.MEMBERS, into);
+		assertArrayEquals(new long[] {1L}, into);
+		assertArrayEquals(new long[] {1L, 2L}, result);
+	}
+
+	@Test
+	public void nullsAreNeverGranted() {
+		GroupPermission perms = empty();
+		assertFalse(perms.hasPermission(null, permission(1)));
+		assertFalse(perms.hasPermission(PlayerType.MEMBERS, null));
+		assertFalse(perms.addPermission(null, permission(1), false));
+		assertFalse(perms.addPermission(PlayerType.MEMBERS, null, false));
+	}
+}